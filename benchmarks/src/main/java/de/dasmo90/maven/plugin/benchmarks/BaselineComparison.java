@@ -0,0 +1,127 @@
+package de.dasmo90.maven.plugin.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf csv} and fails if a benchmark got slower than allowed.
+ * <p>
+ * Usage: {@code BaselineComparison <baseline.csv> <current.csv> [maxRegressionPercent]}
+ */
+public final class BaselineComparison {
+
+	private static final double DEFAULT_MAX_REGRESSION_PERCENT = 10;
+
+	private BaselineComparison() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BaselineComparison <baseline.csv> <current.csv> [maxRegressionPercent]");
+			System.exit(2);
+		}
+		double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_MAX_REGRESSION_PERCENT;
+		Map<String, Result> baseline = read(args[0]);
+		Map<String, Result> current = read(args[1]);
+
+		int regressions = 0;
+		System.out.println(String.format("%-70s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+		for (Map.Entry<String, Result> entry : current.entrySet()) {
+			Result before = baseline.get(entry.getKey());
+			Result after = entry.getValue();
+			if (before == null) {
+				System.out.println(String.format("%-70s %14s %14.3f %9s", entry.getKey(), "-", after.score, "new"));
+				continue;
+			}
+			double change = (after.score - before.score) / before.score * 100;
+			// throughput gets better when growing, every other mode when shrinking
+			double regression = after.higherIsBetter() ? -change : change;
+			boolean failed = regression > maxRegression;
+			if (failed) {
+				regressions++;
+			}
+			System.out.println(String.format("%-70s %14.3f %14.3f %+8.1f%%%s", entry.getKey(), before.score,
+					after.score, change, failed ? " REGRESSION" : ""));
+		}
+		if (regressions > 0) {
+			System.err.println(regressions + " benchmarks regressed by more than " + maxRegression + "%.");
+			System.exit(1);
+		}
+	}
+
+	private static Map<String, Result> read(String file) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+		Map<String, Result> results = new LinkedHashMap<>();
+		if (lines.isEmpty()) {
+			return results;
+		}
+		List<String> header = split(lines.get(0));
+		int benchmark = header.indexOf("Benchmark");
+		int mode = header.indexOf("Mode");
+		int score = header.indexOf("Score");
+		int unit = header.indexOf("Unit");
+		if (benchmark < 0 || mode < 0 || score < 0) {
+			throw new IllegalArgumentException("Not a JMH csv result: " + file);
+		}
+		for (String line : lines.subList(1, lines.size())) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			List<String> row = split(line);
+			StringBuilder key = new StringBuilder(row.get(benchmark)).append(" ").append(row.get(mode));
+			// parameter columns follow the unit and are named "Param: <name>"
+			for (int i = unit + 1; i < header.size() && i < row.size(); i++) {
+				if (!row.get(i).isEmpty()) {
+					key.append(" ").append(header.get(i).replace("Param: ", "")).append("=").append(row.get(i));
+				}
+			}
+			results.put(key.toString(), new Result(row.get(mode), Double.parseDouble(row.get(score))));
+		}
+		return results;
+	}
+
+	private static List<String> split(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private static class Result {
+
+		private final String mode;
+		private final double score;
+
+		private Result(String mode, double score) {
+			this.mode = mode;
+			this.score = score;
+		}
+
+		private boolean higherIsBetter() {
+			return "thrpt".equals(mode);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package de.dasmo90.maven.plugin.benchmarks;
+
+import de.dasmo90.maven.plugin.base.ClassMetadata;
+import de.dasmo90.maven.plugin.base.MavenPluginClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the DTO interfaces on a classpath of synthetic jars: Reflections against the class-file scanner, cold
+ * and with a warm scan index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderScanBenchmark {
+
+	@Param({"20", "100"})
+	private int jars;
+
+	@Param({"200"})
+	private int classesPerJar;
+
+	@Param({"1", "4"})
+	private int scanThreads;
+
+	private File directory;
+	private List<String> classpath;
+	private File scanIndex;
+
+	@Setup(Level.Trial)
+	public void createJars() throws Exception {
+		directory = Files.createTempDirectory("scan-bench").toFile();
+		classpath = SyntheticClasses.createJars(directory, jars, classesPerJar);
+		scanIndex = new File(directory, "scan-index");
+		try (MavenPluginClassLoader classLoader = classLoader(scanIndex)) {
+			classLoader.scanClasses(ClassMetadata::isInterface, SyntheticClasses.OWN_PACKAGE);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteJars() throws Exception {
+		SyntheticClasses.delete(directory);
+	}
+
+	@Benchmark
+	public List<Class<?>> reflections() throws Exception {
+		try (MavenPluginClassLoader classLoader = classLoader(null)) {
+			return classLoader.loadClasses(Class::isInterface, SyntheticClasses.OWN_PACKAGE);
+		}
+	}
+
+	@Benchmark
+	public List<Class<?>> scanner() throws Exception {
+		try (MavenPluginClassLoader classLoader = classLoader(null)) {
+			return classLoader.scanClasses(ClassMetadata::isInterface, SyntheticClasses.OWN_PACKAGE);
+		}
+	}
+
+	@Benchmark
+	public List<Class<?>> scannerWithIndex() throws Exception {
+		try (MavenPluginClassLoader classLoader = classLoader(scanIndex)) {
+			return classLoader.scanClasses(ClassMetadata::isInterface, SyntheticClasses.OWN_PACKAGE);
+		}
+	}
+
+	private MavenPluginClassLoader classLoader(File index) throws Exception {
+		MavenPluginClassLoader classLoader = new MavenPluginClassLoader(SyntheticClasses.project(classpath),
+				getClass().getClassLoader());
+		classLoader.setScanIndexFile(index);
+		classLoader.setScanThreads(scanThreads);
+		return classLoader;
+	}
+}
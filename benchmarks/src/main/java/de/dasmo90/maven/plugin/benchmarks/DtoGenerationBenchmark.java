@@ -0,0 +1,74 @@
+package de.dasmo90.maven.plugin.benchmarks;
+
+import de.dasmo90.maven.plugin.dtogen.DtoClass;
+import de.dasmo90.maven.plugin.dtogen.DtoClassGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering DTOs for interface graphs of growing width (interfaces) and depth (getters per interface).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoGenerationBenchmark {
+
+	@Param({"10", "200"})
+	private int width;
+
+	@Param({"4", "40"})
+	private int depth;
+
+	@Param({"1", "4"})
+	private int threads;
+
+	private File directory;
+	private List<Class<?>> interfaces;
+
+	@Setup(Level.Trial)
+	public void createInterfaces() throws Exception {
+		directory = Files.createTempDirectory("dto-bench").toFile();
+		interfaces = SyntheticClasses.createInterfaces(directory, width, depth);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteInterfaces() throws Exception {
+		SyntheticClasses.delete(directory);
+	}
+
+	@Benchmark
+	public List<DtoClass> collect() throws Exception {
+		return generator().generate();
+	}
+
+	@Benchmark
+	public void stream(Blackhole blackhole) throws Exception {
+		generator().generate((name, content) -> blackhole.consume(content.length()));
+	}
+
+	private DtoClassGenerator generator() throws Exception {
+		DtoClassGenerator generator = new DtoClassGenerator("Dto", interfaces, true);
+		generator.setThreads(threads);
+		return generator;
+	}
+}
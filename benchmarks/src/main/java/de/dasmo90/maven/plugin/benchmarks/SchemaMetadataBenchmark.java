@@ -0,0 +1,79 @@
+package de.dasmo90.maven.plugin.benchmarks;
+
+import de.dasmo90.maven.plugin.dbsgen.SchemaGenerator;
+import de.dasmo90.maven.plugin.dbsgen.ServiceRegistryPool;
+import org.hibernate.boot.Metadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building Hibernate's metadata model, which dominates the schema export, for a growing number of entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaMetadataBenchmark {
+
+	private static final String DIALECT = "org.hibernate.dialect.H2Dialect";
+
+	@Param({"10", "100"})
+	private int entities;
+
+	private File directory;
+	private List<Class<?>> classes;
+	private ServiceRegistryPool registryPool;
+
+	@Setup(Level.Trial)
+	public void createEntities() throws Exception {
+		directory = Files.createTempDirectory("schema-bench").toFile();
+		classes = SyntheticClasses.createEntities(directory, entities);
+		registryPool = new ServiceRegistryPool();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteEntities() throws Exception {
+		registryPool.close();
+		SyntheticClasses.delete(directory);
+	}
+
+	@Benchmark
+	public Metadata buildMetadata() {
+		try (SchemaGenerator generator = generator()) {
+			return generator.createMetadataSources().buildMetadata();
+		}
+	}
+
+	/**
+	 * Like the following modules of a reactor build, which take the registry the first one bootstrapped.
+	 */
+	@Benchmark
+	public Metadata buildMetadataWithPooledRegistry() {
+		try (SchemaGenerator generator = generator()) {
+			generator.setServiceRegistryPool(registryPool);
+			return generator.createMetadataSources().buildMetadata();
+		}
+	}
+
+	private SchemaGenerator generator() {
+		return new SchemaGenerator(classes.get(0).getClassLoader(), DIALECT, classes);
+	}
+}
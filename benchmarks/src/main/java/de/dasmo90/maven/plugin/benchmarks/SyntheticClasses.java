@@ -0,0 +1,175 @@
+package de.dasmo90.maven.plugin.benchmarks;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates the class files the benchmarks run on.
+ */
+final class SyntheticClasses {
+
+	static final String OWN_PACKAGE = "bench.api";
+	static final String DTO_PACKAGE = "bench.dto";
+	static final String ENTITY_PACKAGE = "bench.entity";
+
+	/**
+	 * Only the first jars hold classes below {@link #OWN_PACKAGE}, the others stand for third-party dependencies.
+	 */
+	private static final int OWN_JARS = 3;
+
+	private SyntheticClasses() {
+	}
+
+	/**
+	 * @return the paths of the jars, in classpath order
+	 */
+	static List<String> createJars(File directory, int jars, int classesPerJar) throws Exception {
+		List<String> paths = new ArrayList<>();
+		for (int j = 0; j < jars; j++) {
+			String pkg = j < OWN_JARS ? OWN_PACKAGE + ".j" + j : "thirdparty.j" + j;
+			ClassPool pool = new ClassPool(true);
+			File jar = new File(directory, "lib" + j + ".jar");
+			try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+				for (int c = 0; c < classesPerJar; c++) {
+					String name = pkg + ".C" + c;
+					// every other class is an interface, like an API module mixing DTO interfaces and helpers
+					CtClass ctClass = c % 2 == 0 ? pool.makeInterface(name) : pool.makeClass(name);
+					out.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+					out.write(ctClass.toBytecode());
+					out.closeEntry();
+				}
+			}
+			paths.add(jar.getAbsolutePath());
+		}
+		return paths;
+	}
+
+	/**
+	 * Interfaces with {@code depth} getters each, referencing their neighbours directly and as list.
+	 */
+	static List<Class<?>> createInterfaces(File directory, int width, int depth) throws Exception {
+		ClassPool pool = new ClassPool(true);
+		List<CtClass> interfaces = new ArrayList<>();
+		for (int i = 0; i < width; i++) {
+			interfaces.add(pool.makeInterface(DTO_PACKAGE + ".I" + i));
+		}
+		CtClass string = pool.get(String.class.getName());
+		CtClass list = pool.get(List.class.getName());
+		for (int i = 0; i < width; i++) {
+			CtClass ctClass = interfaces.get(i);
+			CtClass next = interfaces.get((i + 1) % width);
+			for (int d = 0; d < depth; d++) {
+				CtMethod method;
+				switch (d % 4) {
+					case 0:
+						method = CtNewMethod.abstractMethod(CtClass.intType, "getNumber" + d, null, null, ctClass);
+						break;
+					case 1:
+						method = CtNewMethod.abstractMethod(next, "getNext" + d, null, null, ctClass);
+						break;
+					case 2:
+						method = CtNewMethod.abstractMethod(list, "getNexts" + d, null, null, ctClass);
+						method.setGenericSignature("()Ljava/util/List<L" + next.getName().replace('.', '/') + ";>;");
+						break;
+					default:
+						method = CtNewMethod.abstractMethod(string, "getText" + d, null, null, ctClass);
+				}
+				ctClass.addMethod(method);
+			}
+		}
+		return write(directory, interfaces);
+	}
+
+	/**
+	 * Entities with an id, two columns and a many-to-one relation to the previous entity.
+	 */
+	static List<Class<?>> createEntities(File directory, int count) throws Exception {
+		ClassPool pool = new ClassPool(true);
+		List<CtClass> entities = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			entities.add(pool.makeClass(ENTITY_PACKAGE + ".E" + i));
+		}
+		for (int i = 0; i < count; i++) {
+			CtClass ctClass = entities.get(i);
+			ConstPool constPool = ctClass.getClassFile().getConstPool();
+			ctClass.getClassFile().addAttribute(annotation(constPool, "javax.persistence.Entity"));
+
+			CtField id = new CtField(pool.get(Long.class.getName()), "id", ctClass);
+			id.getFieldInfo().addAttribute(annotation(constPool, "javax.persistence.Id"));
+			ctClass.addField(id);
+			ctClass.addField(new CtField(pool.get(String.class.getName()), "name", ctClass));
+			ctClass.addField(new CtField(CtClass.intType, "amount", ctClass));
+			if (i > 0) {
+				CtField parent = new CtField(entities.get(i - 1), "parent", ctClass);
+				parent.getFieldInfo().addAttribute(annotation(constPool, "javax.persistence.ManyToOne"));
+				ctClass.addField(parent);
+			}
+			ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+		}
+		return write(directory, entities);
+	}
+
+	static MavenProject project(List<String> classpathElements) {
+		return new MavenProject() {
+			@Override
+			public List<String> getCompileSourceRoots() {
+				return Collections.emptyList();
+			}
+
+			@Override
+			public List<String> getCompileClasspathElements() {
+				return classpathElements;
+			}
+		};
+	}
+
+	static void delete(File directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static AnnotationsAttribute annotation(ConstPool constPool, String annotation) {
+		AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+		attribute.addAnnotation(new Annotation(annotation, constPool));
+		return attribute;
+	}
+
+	private static List<Class<?>> write(File directory, List<CtClass> ctClasses) throws Exception {
+		for (CtClass ctClass : ctClasses) {
+			ctClass.writeFile(directory.getAbsolutePath());
+		}
+		ClassLoader classLoader = new URLClassLoader(new URL[]{directory.toURI().toURL()},
+				SyntheticClasses.class.getClassLoader());
+		List<Class<?>> classes = new ArrayList<>();
+		for (CtClass ctClass : ctClasses) {
+			classes.add(classLoader.loadClass(ctClass.getName()));
+		}
+		return classes;
+	}
+}
@@ -1,6 +1,12 @@
 package de.dasmo90.maven.plugin.dbsgen;
 
+import de.dasmo90.maven.plugin.base.ClassLoaderMetrics;
+import de.dasmo90.maven.plugin.base.ClasspathCache;
+import de.dasmo90.maven.plugin.base.FingerprintIndex;
+import de.dasmo90.maven.plugin.base.Instrumentation;
 import de.dasmo90.maven.plugin.base.MavenPluginClassLoader;
+import de.dasmo90.maven.plugin.base.SessionScope;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -8,25 +14,29 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.hibernate.boot.MetadataSources;
-import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
-import org.hibernate.boot.registry.classloading.internal.ClassLoaderServiceImpl;
-import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
 import org.hibernate.dialect.H2Dialect;
 import org.hibernate.dialect.HSQLDialect;
 import org.hibernate.dialect.MySQLDialect;
-import org.hibernate.tool.hbm2ddl.SchemaExport;
-import org.hibernate.tool.schema.TargetType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.Entity;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.util.EnumSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 @Mojo(
 		name = "generate-db-schema",
@@ -35,104 +45,376 @@ import java.util.Objects;
 )
 public final class DbsGenMojo extends AbstractMojo {
 
+	private static final String SCAN_INDEX = "target/dasmo90/dbs-gen.scan-index";
+
+	private static final String STATE_PREFIX = "target/dasmo90/dbs-gen";
+
+	private static final String DIALECT_KEY = "@dialect";
+
+	private static final String CREATE_SCRIPT = "create.sql";
+
+	private static final String DROP_SCRIPT = "drop.sql";
+
+	private static final String UPDATE_SCRIPT = "update.sql";
+
+	private static final String REPORT = "target/dasmo90/generate-db-schema-report.json";
+
 	private Logger LOG = LoggerFactory.getLogger(DbsGenMojo.class);
 
 	@Parameter(defaultValue = "${project}", readonly = true)
 	private MavenProject project;
 
-	@Parameter(readonly = true, required = true)
+	@Parameter(defaultValue = "${session}", readonly = true)
+	private MavenSession session;
+
+	/**
+	 * Package prefixes of the default schema, also used by units without own prefixes.
+	 */
+	@Parameter(readonly = true)
 	private List<String> packagePrefixes;
 
-	@Parameter(readonly = true, required = true)
+	/**
+	 * Dialect of the default schema, which is written to target/. Without it, only the units are generated.
+	 */
+	@Parameter(readonly = true)
 	private String dialect;
 
 	@Parameter(readonly = true)
 	private DbConnection connection;
 
+	/**
+	 * Further schemas, each of its own entities and dialect and written to target/&lt;name&gt;/. The classpath is
+	 * scanned once for all of them and they are generated in parallel.
+	 */
+	@Parameter(readonly = true)
+	private List<SchemaUnit> units;
+
+	/**
+	 * Migrates the connected database instead of recreating it, the statements are kept in target/update.sql.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean update;
+
+	/**
+	 * Checks the connected database against the entities after it was created or updated.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean validate;
+
+	/**
+	 * Writes only the statements migrating the previous schema to target/update.sql, no database gets changed. The
+	 * previous schema is read from the connection or, without one, from the snapshot.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean diff;
+
+	/**
+	 * The schema of the last diff without connection, replaced after each one. Units keep theirs next to it.
+	 */
+	@Parameter(defaultValue = "${project.basedir}/target/dasmo90/dbs-gen.snapshot.sql", readonly = true)
+	private File snapshot;
+
+	/**
+	 * Skips writing the scripts if no entity changed since the last build. Has no effect with a connection or in diff
+	 * mode.
+	 */
+	@Parameter(defaultValue = "true", readonly = true)
+	private boolean incremental;
+
+	@Parameter(defaultValue = "true", property = "dasmo90.scanIndex", readonly = true)
+	private boolean scanIndex;
+
+	@Parameter(defaultValue = "0", property = "dasmo90.scanThreads", readonly = true)
+	private int scanThreads;
+
+	/**
+	 * Writes timings and counts of the execution to {@value #REPORT}, per unit below its name.
+	 */
+	@Parameter(defaultValue = "true", property = "dasmo90.report", readonly = true)
+	private boolean report;
+
+	private Instrumentation instrumentation = Instrumentation.NONE;
+
 	public void execute() throws MojoExecutionException {
+		if (report) {
+			instrumentation = new Instrumentation();
+			instrumentation.setAttribute("goal", "generate-db-schema");
+			instrumentation.setAttribute("project", project.getId());
+		}
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("execute")) {
+			generateSchemas();
+		} finally {
+			writeReport();
+		}
+	}
 
-		LOG.info("Scanning packages: {}", packagePrefixes);
+	private void generateSchemas() throws MojoExecutionException {
+
+		List<SchemaUnit> schemaUnits = getSchemaUnits();
+		Set<String> allPrefixes = new LinkedHashSet<>();
+		for (SchemaUnit unit : schemaUnits) {
+			allPrefixes.addAll(unit.getPackagePrefixes());
+		}
+
+		LOG.info("Scanning packages: {}", allPrefixes);
 
-		final List<Class<?>> entities;
 		final MavenPluginClassLoader projectClassLoader;
 		ClassLoader localClassLoader = this.getClass().getClassLoader();
 		try {
-			projectClassLoader = new MavenPluginClassLoader(project, localClassLoader);
+			projectClassLoader = new MavenPluginClassLoader(project, localClassLoader,
+					SessionScope.of(session).get(ClasspathCache.class, ClasspathCache::new));
+		} catch (Exception e) {
+			throw new MojoExecutionException("Failed to load interfaces from classpath.", e);
+		}
+		try {
+			generateUnits(schemaUnits, allPrefixes, projectClassLoader, localClassLoader);
+		} finally {
+			close(projectClassLoader);
+		}
+	}
+
+	private void generateUnits(List<SchemaUnit> schemaUnits, Set<String> allPrefixes,
+			MavenPluginClassLoader projectClassLoader, ClassLoader localClassLoader) throws MojoExecutionException {
+
+		final List<Class<?>> entities;
+		try {
+			if (scanIndex) {
+				projectClassLoader.setScanIndexFile(new File(this.project.getBasedir(), SCAN_INDEX));
+			}
+			projectClassLoader.setScanThreads(scanThreads);
+			projectClassLoader.setInstrumentation(instrumentation);
 			entities = projectClassLoader
-					.loadClasses(c -> Objects.nonNull(c.getAnnotation(Entity.class)),
-							packagePrefixes.toArray(new String[packagePrefixes.size()])
+					.scanClasses(c -> c.isAnnotatedWith(Entity.class),
+							allPrefixes.toArray(new String[allPrefixes.size()])
 					);
 
 		} catch (Exception e) {
 			throw new MojoExecutionException("Failed to load interfaces from classpath.", e);
 		}
-		String dialectClass;
+
+		// bootstrapping Hibernate is left to the first module of the build, the others take its registries
+		ServiceRegistryPool registryPool = SessionScope.of(session).get(ServiceRegistryPool.class,
+				ServiceRegistryPool::new);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (SchemaUnit unit : schemaUnits) {
+			String dialectClass = getDialectClass(unit.getDialect(), localClassLoader);
+			if ((update || validate) && unit.getConnection() == null) {
+				throw new MojoExecutionException("Updating or validating the schema requires a connection.");
+			}
+			List<Class<?>> unitEntities = entities.stream()
+					.filter(e -> unit.getPackagePrefixes().stream().anyMatch(e.getName()::startsWith))
+					.collect(Collectors.toList());
+			tasks.add(() -> {
+				generate(unit, dialectClass, unitEntities, projectClassLoader, registryPool);
+				return null;
+			});
+		}
+		if (tasks.size() == 1) {
+			try {
+				tasks.get(0).call();
+			} catch (Exception e) {
+				throw new MojoExecutionException("Error during generation.", e);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
 		try {
-			switch (this.dialect) {
+			List<Future<Void>> futures = executor.invokeAll(tasks);
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					throw new MojoExecutionException("Error during generation of schema \""
+							+ getLabel(schemaUnits.get(i)) + "\".", e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted during generation.", e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void close(MavenPluginClassLoader projectClassLoader) {
+		try {
+			projectClassLoader.close();
+		} catch (IOException e) {
+			LOG.warn("Failed to close class loader: {}", e.getMessage());
+		}
+		LOG.info("Project: {}", projectClassLoader.getMetrics());
+		LOG.info("All modules: {}", ClassLoaderMetrics.global());
+		instrumentation.count("classLoader", projectClassLoader.getMetrics());
+	}
+
+	private void writeReport() {
+		if (!report) {
+			return;
+		}
+		File file = new File(this.project.getBasedir(), REPORT);
+		try {
+			instrumentation.writeReport(file);
+			LOG.debug("Report written to {}", file);
+		} catch (IOException e) {
+			LOG.warn("Failed to write report \"{}\": {}", file, e.getMessage());
+		}
+	}
+
+	private List<SchemaUnit> getSchemaUnits() throws MojoExecutionException {
+		List<SchemaUnit> schemaUnits = new ArrayList<>();
+		if (dialect != null) {
+			SchemaUnit defaultUnit = new SchemaUnit();
+			defaultUnit.setDialect(dialect);
+			defaultUnit.setPackagePrefixes(packagePrefixes);
+			defaultUnit.setConnection(connection);
+			schemaUnits.add(defaultUnit);
+		}
+		if (units != null) {
+			Set<String> names = new HashSet<>();
+			for (SchemaUnit unit : units) {
+				if (unit.getName() == null || unit.getName().isEmpty() || unit.getDialect() == null) {
+					throw new MojoExecutionException("Each unit needs a name and a dialect.");
+				}
+				if (!names.add(unit.getName())) {
+					throw new MojoExecutionException("Unit \"" + unit.getName() + "\" is configured twice.");
+				}
+				if (unit.getPackagePrefixes() == null || unit.getPackagePrefixes().isEmpty()) {
+					unit.setPackagePrefixes(packagePrefixes);
+				}
+				schemaUnits.add(unit);
+			}
+		}
+		if (schemaUnits.isEmpty()) {
+			throw new MojoExecutionException("Neither a dialect nor units are configured.");
+		}
+		for (SchemaUnit unit : schemaUnits) {
+			if (unit.getPackagePrefixes() == null || unit.getPackagePrefixes().isEmpty()) {
+				throw new MojoExecutionException("No package prefixes for schema \"" + getLabel(unit) + "\".");
+			}
+		}
+		return schemaUnits;
+	}
+
+	private static String getDialectClass(String dialect, ClassLoader classLoader) throws MojoExecutionException {
+		try {
+			switch (dialect) {
 				case "mysql":
-					dialectClass = MySQLDialect.class.getName();
-					break;
+					return MySQLDialect.class.getName();
 				case "h2":
 				case "h2db":
-					dialectClass = H2Dialect.class.getName();
-					break;
+					return H2Dialect.class.getName();
 				case "hsql":
 				case "hsqldb":
-					dialectClass = HSQLDialect.class.getName();
-					break;
+					return HSQLDialect.class.getName();
 				default:
-					dialectClass = localClassLoader.loadClass(this.dialect).getName();
+					return classLoader.loadClass(dialect).getName();
 			}
 		} catch (ClassNotFoundException e) {
-			throw new MojoExecutionException("Dialect \"" + this.dialect + "\" is not available.");
+			throw new MojoExecutionException("Dialect \"" + dialect + "\" is not available.");
 		}
-		try {
-			Connection dbConnection = null;
-			if(connection != null) {
-				dbConnection = DriverManager.getConnection(
-						connection.getUrl(),
-						connection.getUser(),
-						connection.getPassword());
+	}
+
+	private void generate(SchemaUnit unit, String dialectClass, List<Class<?>> entities, ClassLoader classLoader,
+			ServiceRegistryPool registryPool) throws Exception {
+		String label = getLabel(unit);
+		Instrumentation unitInstrumentation = instrumentation.scope(unit.getName());
+		DbConnection connection = unit.getConnection();
+		File indexFile = getStateFile(unit, "entities");
+		FingerprintIndex index = null;
+		if (incremental && connection == null && !diff) {
+			try {
+				index = FingerprintIndex.load(indexFile);
+				if (isUpToDate(unit, index, dialectClass, entities)) {
+					LOG.info("Schema {} is up to date, {} entities unchanged.", label, entities.size());
+					unitInstrumentation.count("upToDate");
+					return;
+				}
+			} catch (IOException e) {
+				LOG.warn("Cannot check entities of schema {} for changes, generating it: {}", label, e.getMessage());
+				index = null;
 			}
-			StandardServiceRegistryBuilder registryBuilder = new StandardServiceRegistryBuilder();
-			registryBuilder.addService(ClassLoaderService.class, new ClassLoaderServiceImpl(projectClassLoader));
-			registryBuilder.applySetting("hibernate.dialect", dialectClass);
+		}
+		if (index == null) {
+			// the scripts are written without updating the index, it must not report them up to date later
+			Files.deleteIfExists(indexFile.toPath());
+		}
+		File snapshot = unit.getName() == null ? this.snapshot : getStateFile(unit, "snapshot.sql");
+		try (Connection dbConnection = connection == null ? null : DriverManager.getConnection(
+				connection.getUrl(),
+				connection.getUser(),
+				connection.getPassword());
+			 SnapshotDatabase snapshotDatabase = connection == null && diff
+					 ? SnapshotDatabase.open(snapshot, dialectClass)
+					 : null;
+			 SchemaGenerator generator = new SchemaGenerator(classLoader, dialectClass, entities)) {
+			generator.setServiceRegistryPool(registryPool);
+			generator.setInstrumentation(unitInstrumentation);
 
 			if(dbConnection != null) {
-				LOG.info("Setting database connection to {}", connection.getUrl());
-				registryBuilder.applySetting("javax.persistence.schema-generation-connection", dbConnection);
+				LOG.info("Setting database connection of schema {} to {}", label, connection.getUrl());
+				generator.setConnection(dbConnection);
+			} else if (snapshotDatabase != null) {
+				generator.setConnection(snapshotDatabase.getConnection());
 			}
 
-			MetadataSources metadata = new MetadataSources(registryBuilder.build());
-
-			for (final Class entity : entities) {
-				metadata.addAnnotatedClass(entity);
-				LOG.debug("Added entity: {}", entity.getName());
-			}
+			generator.writeScripts(getOutputFile(unit, CREATE_SCRIPT), getOutputFile(unit, DROP_SCRIPT));
 
-			Thread.currentThread().setContextClassLoader(projectClassLoader);
-			SchemaExport export = new SchemaExport();
-			export.setDelimiter(";");
-
-			if(connection != null) {
-				export.create(EnumSet.of(TargetType.DATABASE), metadata.buildMetadata());
-			} else {
-				File target = this.project.getBasedir();
-				File createSqlFile = new File(target, "target/create.sql");
-				File dropSqlFile = new File(target, "target/drop.sql");
-				File parent = createSqlFile.getParentFile();
-				if (!parent.exists() && !parent.mkdirs()) {
-					throw new IllegalStateException("Couldn't create dir: " + parent);
+			File updateScript = getOutputFile(unit, UPDATE_SCRIPT);
+			if (dbConnection != null) {
+				if (update) {
+					generator.updateDatabase(updateScript);
+				} else if (diff) {
+					generator.writeUpdateScript(updateScript);
+				} else {
+					generator.createDatabase();
+				}
+				if (validate) {
+					generator.validateDatabase();
+				}
+			} else if (snapshotDatabase != null) {
+				// the snapshot follows the entities, so the next diff starts from here
+				generator.updateDatabase(updateScript);
+				try (Instrumentation.Stopwatch ignored = unitInstrumentation.start("snapshot")) {
+					snapshotDatabase.save(snapshot);
 				}
-				export.setFormat(true);
-				export.setOutputFile(createSqlFile.getAbsolutePath());
-				export.createOnly(EnumSet.of(TargetType.SCRIPT), metadata.buildMetadata());
-				export.setOutputFile(dropSqlFile.getAbsolutePath());
-				export.drop(EnumSet.of(TargetType.SCRIPT), metadata.buildMetadata());
 			}
+			if (index != null) {
+				index.save();
+			}
+		}
+	}
 
-		} catch (Exception e) {
-			throw new MojoExecutionException("Error during generation.", e);
+	/**
+	 * Puts the fingerprints of this build into the index. The metadata of all entities has to be bound together, as
+	 * associations cross entities, so a single change means generating the whole schema.
+	 */
+	private boolean isUpToDate(SchemaUnit unit, FingerprintIndex index, String dialectClass,
+			List<Class<?>> entities) throws IOException {
+		boolean upToDate = getOutputFile(unit, CREATE_SCRIPT).isFile() && getOutputFile(unit, DROP_SCRIPT).isFile();
+		index.put(DIALECT_KEY, dialectClass);
+		upToDate &= index.isUnchanged(DIALECT_KEY, dialectClass);
+		for (Class<?> entity : entities) {
+			String fingerprint = EntityFingerprints.of(entity);
+			index.put(entity.getName(), fingerprint);
+			if (!index.isUnchanged(entity.getName(), fingerprint)) {
+				LOG.debug("Entity changed: {}", entity.getName());
+				upToDate = false;
+			}
 		}
+		return upToDate && index.removed().isEmpty();
+	}
+
+	private File getOutputFile(SchemaUnit unit, String fileName) {
+		String directory = unit.getName() == null ? "target/" : "target/" + unit.getName() + "/";
+		return new File(this.project.getBasedir(), directory + fileName);
+	}
+
+	private File getStateFile(SchemaUnit unit, String extension) {
+		String name = unit.getName() == null ? "" : "." + unit.getName();
+		return new File(this.project.getBasedir(), STATE_PREFIX + name + "." + extension);
+	}
+
+	private static String getLabel(SchemaUnit unit) {
+		return unit.getName() == null ? "default" : unit.getName();
 	}
-}
\ No newline at end of file
+}
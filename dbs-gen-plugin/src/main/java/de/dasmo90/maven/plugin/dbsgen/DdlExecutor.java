@@ -0,0 +1,116 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Runs DDL statements against a connection in JDBC batches instead of one round-trip per statement. Statements which
+ * must succeed run in one transaction, as far as the database supports transactional DDL.
+ */
+public class DdlExecutor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DdlExecutor.class);
+
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	private final Connection connection;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	public DdlExecutor(Connection connection) {
+		this.connection = connection;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Runs the statements ignoring failures, like Hibernate does for dropping objects which might not exist.
+	 */
+	public void executeTolerant(String phase, List<String> statements) throws SQLException {
+		long start = System.currentTimeMillis();
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(true);
+		try (Statement statement = connection.createStatement()) {
+			try {
+				executeBatches(statement, statements);
+			} catch (BatchUpdateException e) {
+				// drivers differ in whether they go on after a failure, so each statement is tried on its own
+				LOG.debug("Batch failed, running statements one by one: {}", e.getMessage());
+				statement.clearBatch();
+				for (String sql : statements) {
+					try {
+						statement.execute(sql);
+					} catch (SQLException failure) {
+						LOG.debug("Ignoring failed statement \"{}\": {}", sql, failure.getMessage());
+					}
+				}
+			}
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+		logTiming(phase, statements, start);
+	}
+
+	/**
+	 * Runs the statements, all of them or, with transactional DDL, none.
+	 */
+	public void execute(String phase, List<String> statements) throws SQLException {
+		long start = System.currentTimeMillis();
+		boolean transactional = supportsTransactionalDdl();
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(!transactional);
+		try (Statement statement = connection.createStatement()) {
+			executeBatches(statement, statements);
+			if (transactional) {
+				connection.commit();
+			}
+		} catch (SQLException e) {
+			if (transactional) {
+				connection.rollback();
+			}
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+		logTiming(phase, statements, start);
+	}
+
+	private void executeBatches(Statement statement, List<String> statements) throws SQLException {
+		if (!connection.getMetaData().supportsBatchUpdates()) {
+			for (String sql : statements) {
+				statement.execute(sql);
+			}
+			return;
+		}
+		int pending = 0;
+		for (String sql : statements) {
+			statement.addBatch(sql);
+			if (++pending == batchSize) {
+				statement.executeBatch();
+				pending = 0;
+			}
+		}
+		if (pending > 0) {
+			statement.executeBatch();
+		}
+	}
+
+	private boolean supportsTransactionalDdl() throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		return metaData.supportsTransactions()
+				&& metaData.supportsDataDefinitionAndDataManipulationTransactions()
+				&& !metaData.dataDefinitionCausesTransactionCommit();
+	}
+
+	private static void logTiming(String phase, List<String> statements, long start) {
+		LOG.info("{}: {} statements in {} ms.", phase, statements.size(), System.currentTimeMillis() - start);
+	}
+}
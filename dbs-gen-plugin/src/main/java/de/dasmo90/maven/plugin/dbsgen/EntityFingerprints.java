@@ -0,0 +1,77 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import de.dasmo90.maven.plugin.base.Fingerprints;
+
+import javax.persistence.Embeddable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Fingerprints the bytecode an entity's mapping depends on: the entity itself, its superclasses and the embeddables
+ * of its fields. The annotations are part of the bytecode, so any change of the mapping changes the fingerprint.
+ */
+final class EntityFingerprints {
+
+	private EntityFingerprints() {
+	}
+
+	static String of(Class<?> entity) throws IOException {
+		MessageDigest digest = Fingerprints.newDigest();
+		byte[] buffer = new byte[8192];
+		for (Class<?> c : dependencies(entity)) {
+			digest.update(c.getName().getBytes(StandardCharsets.UTF_8));
+			try (InputStream in = c.getClassLoader().getResourceAsStream(c.getName().replace('.', '/') + ".class")) {
+				if (in == null) {
+					throw new IOException("Class file of \"" + c.getName() + "\" not found.");
+				}
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			}
+		}
+		return Fingerprints.toHex(digest.digest());
+	}
+
+	private static Set<Class<?>> dependencies(Class<?> entity) {
+		Set<Class<?>> dependencies = new LinkedHashSet<>();
+		Deque<Class<?>> open = new ArrayDeque<>();
+		open.add(entity);
+		while (!open.isEmpty()) {
+			Class<?> c = open.poll();
+			// classes of the JDK or without class loader cannot change between builds of the project
+			if (c.getClassLoader() == null || !dependencies.add(c)) {
+				continue;
+			}
+			if (c.getSuperclass() != null) {
+				open.add(c.getSuperclass());
+			}
+			for (Field field : c.getDeclaredFields()) {
+				addEmbeddables(open, field.getGenericType());
+			}
+		}
+		return dependencies;
+	}
+
+	private static void addEmbeddables(Deque<Class<?>> open, Type type) {
+		if (type instanceof Class) {
+			Class<?> c = (Class<?>) type;
+			if (c.isAnnotationPresent(Embeddable.class)) {
+				open.add(c);
+			}
+		} else if (type instanceof ParameterizedType) {
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				addEmbeddables(open, argument);
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+
+import java.sql.Connection;
+
+/**
+ * Hands the configured connection to Hibernate, which reads the database's metadata from it. Closing is left to
+ * the owner of the connection.
+ */
+class ProvidedConnectionProvider implements ConnectionProvider {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Connection connection;
+
+	ProvidedConnectionProvider(Connection connection) {
+		this.connection = connection;
+	}
+
+	@Override
+	public Connection getConnection() {
+		return connection;
+	}
+
+	@Override
+	public void closeConnection(Connection conn) {
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	@Override
+	public boolean isUnwrappableAs(Class unwrapType) {
+		return unwrapType.isInstance(this);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> unwrapType) {
+		return (T) this;
+	}
+}
@@ -0,0 +1,400 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import de.dasmo90.maven.plugin.base.Instrumentation;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.registry.classloading.internal.ClassLoaderServiceImpl;
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.jdbc.internal.FormatStyle;
+import org.hibernate.engine.jdbc.internal.Formatter;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+import org.hibernate.tool.schema.TargetType;
+import org.hibernate.tool.schema.internal.ExceptionHandlerHaltImpl;
+import org.hibernate.tool.schema.spi.SchemaManagementTool;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.hibernate.tool.schema.spi.ScriptTargetOutput;
+import org.hibernate.tool.schema.spi.TargetDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the entities of a project to Hibernate's metadata model, from which the schema gets exported. The model is
+ * built once and shared by all outputs.
+ */
+public class SchemaGenerator implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SchemaGenerator.class);
+
+	private static final String DELIMITER = ";";
+
+	private final ClassLoader classLoader;
+	private final String dialectClass;
+	private final List<Class<?>> entities;
+	private final List<StandardServiceRegistry> pooledRegistries = new ArrayList<>();
+	private final List<StandardServiceRegistry> ownRegistries = new ArrayList<>();
+	private Connection connection;
+	private ServiceRegistryPool serviceRegistryPool;
+	private Metadata metadata;
+	private Instrumentation instrumentation = Instrumentation.NONE;
+
+	public SchemaGenerator(ClassLoader classLoader, String dialectClass, List<Class<?>> entities) {
+		this.classLoader = classLoader;
+		this.dialectClass = dialectClass;
+		this.entities = new ArrayList<>(entities);
+	}
+
+	public void setConnection(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Takes the registries from the pool instead of bootstrapping them, as long as no connection is set.
+	 */
+	public void setServiceRegistryPool(ServiceRegistryPool serviceRegistryPool) {
+		this.serviceRegistryPool = serviceRegistryPool;
+	}
+
+	/**
+	 * Records the time spent binding the entities, writing scripts and executing statements.
+	 */
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public synchronized MetadataSources createMetadataSources() {
+		StandardServiceRegistry registry;
+		if (serviceRegistryPool != null && connection == null) {
+			Map<String, Object> settings = new HashMap<>();
+			settings.put("hibernate.dialect", dialectClass);
+			registry = serviceRegistryPool.acquire(settings, classLoader);
+			pooledRegistries.add(registry);
+		} else {
+			StandardServiceRegistryBuilder registryBuilder = new StandardServiceRegistryBuilder();
+			registryBuilder.addService(ClassLoaderService.class, new ClassLoaderServiceImpl(classLoader));
+			registryBuilder.applySetting("hibernate.dialect", dialectClass);
+
+			if (connection != null) {
+				registryBuilder.applySetting("javax.persistence.schema-generation-connection", connection);
+				// without it, identifiers are compared in the dialect's default case instead of the database's
+				registryBuilder.addService(ConnectionProvider.class, new ProvidedConnectionProvider(connection));
+			}
+			registry = registryBuilder.build();
+			ownRegistries.add(registry);
+		}
+
+		MetadataSources metadata = new MetadataSources(registry);
+
+		for (final Class entity : entities) {
+			metadata.addAnnotatedClass(entity);
+			LOG.debug("Added entity: {}", entity.getName());
+		}
+		return metadata;
+	}
+
+	/**
+	 * Returns pooled registries and destroys the others, the metadata must not be used afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		for (StandardServiceRegistry registry : pooledRegistries) {
+			serviceRegistryPool.release(registry);
+		}
+		pooledRegistries.clear();
+		for (StandardServiceRegistry registry : ownRegistries) {
+			StandardServiceRegistryBuilder.destroy(registry);
+		}
+		ownRegistries.clear();
+		metadata = null;
+	}
+
+	/**
+	 * Binds all entities on the first call, later calls return the same model.
+	 */
+	public synchronized Metadata getMetadata() {
+		if (metadata == null) {
+			long start = System.nanoTime();
+			metadata = withContextClassLoader(() -> createMetadataSources().buildMetadata());
+			long nanos = System.nanoTime() - start;
+			LOG.info("Bound {} entities in {} ms.", entities.size(), TimeUnit.NANOSECONDS.toMillis(nanos));
+			instrumentation.record("metadata", nanos);
+			instrumentation.count("entities", entities.size());
+		}
+		return metadata;
+	}
+
+	/**
+	 * Writes the create and the drop script concurrently, each by its own exporter.
+	 */
+	public void writeScripts(File createScript, File dropScript) throws IOException {
+		Metadata metadata = getMetadata();
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("scripts")) {
+			prepare(createScript);
+			prepare(dropScript);
+			runConcurrently(
+					() -> {
+						newExport(createScript).createOnly(EnumSet.of(TargetType.SCRIPT), metadata);
+						return null;
+					},
+					() -> {
+						newExport(dropScript).drop(EnumSet.of(TargetType.SCRIPT), metadata);
+						return null;
+					});
+		}
+	}
+
+	/**
+	 * Drops and recreates the schema in the connected database, in batches.
+	 */
+	public void createDatabase() throws SQLException {
+		requireConnection("create");
+		Metadata metadata = getMetadata();
+		long start = System.currentTimeMillis();
+		List<String> drop;
+		List<String> create;
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("statements")) {
+			drop = collectStatements(SchemaExport.Action.DROP, metadata);
+			create = collectStatements(SchemaExport.Action.CREATE, metadata);
+		}
+		LOG.info("generate: {} statements in {} ms.", drop.size() + create.size(), System.currentTimeMillis() - start);
+
+		DdlExecutor executor = new DdlExecutor(connection);
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("ddl.drop")) {
+			executor.executeTolerant("drop", drop);
+		}
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("ddl.create")) {
+			executor.execute("create", create);
+		}
+		instrumentation.count("ddl.statements", drop.size() + create.size());
+	}
+
+	/**
+	 * Migrates the connected database to the schema of the entities, in batches.
+	 *
+	 * @param updateScript if not null, the migrating statements are written to it as well
+	 */
+	public void updateDatabase(File updateScript) throws IOException, SQLException {
+		requireConnection("update");
+		Metadata metadata = getMetadata();
+		long start = System.currentTimeMillis();
+		List<String> update;
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("statements")) {
+			update = collectMigration(metadata);
+		}
+		LOG.info("generate: {} statements in {} ms.", update.size(), System.currentTimeMillis() - start);
+
+		if (updateScript != null) {
+			try (Instrumentation.Stopwatch ignored = instrumentation.start("scripts.update")) {
+				writeScript(updateScript, update);
+			}
+		}
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("ddl.update")) {
+			new DdlExecutor(connection).execute("update", update);
+		}
+		instrumentation.count("ddl.statements", update.size());
+	}
+
+	/**
+	 * Writes the statements migrating the connected database to the schema of the entities, one by one as they are
+	 * computed. The database is only read.
+	 */
+	public void writeUpdateScript(File updateScript) throws IOException {
+		requireConnection("diff");
+		Metadata metadata = getMetadata();
+		SchemaUpdate update = new SchemaUpdate()
+				.setHaltOnError(true)
+				.setDelimiter(DELIMITER)
+				.setFormat(true)
+				.setOutputFile(updateScript.getAbsolutePath());
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("scripts.update")) {
+			prepare(updateScript);
+			withContextClassLoader(() -> {
+				update.execute(EnumSet.of(TargetType.SCRIPT), metadata);
+				return null;
+			});
+		}
+	}
+
+	private List<String> collectStatements(SchemaExport.Action action, Metadata metadata) {
+		StatementCollector collector = new StatementCollector();
+		withContextClassLoader(() -> {
+			new SchemaExport().setHaltOnError(true)
+					.doExecution(action, false, metadata, serviceRegistry(metadata), collector);
+			return null;
+		});
+		return collector.statements;
+	}
+
+	private List<String> collectMigration(Metadata metadata) {
+		StatementCollector collector = new StatementCollector();
+		withContextClassLoader(() -> {
+			ServiceRegistry registry = serviceRegistry(metadata);
+			Map settings = registry.getService(ConfigurationService.class).getSettings();
+			registry.getService(SchemaManagementTool.class).getSchemaMigrator(settings).doMigration(metadata,
+					SchemaManagementToolCoordinator.buildExecutionOptions(settings, ExceptionHandlerHaltImpl.INSTANCE),
+					collector);
+			return null;
+		});
+		return collector.statements;
+	}
+
+	private static ServiceRegistry serviceRegistry(Metadata metadata) {
+		return ((MetadataImplementor) metadata).getMetadataBuildingOptions().getServiceRegistry();
+	}
+
+	private static void writeScript(File script, List<String> statements) throws IOException {
+		prepare(script);
+		Formatter formatter = FormatStyle.DDL.getFormatter();
+		try (BufferedWriter writer = Files.newBufferedWriter(script.toPath(), StandardCharsets.UTF_8)) {
+			for (String statement : statements) {
+				writer.write(formatter.format(statement));
+				writer.write(DELIMITER);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Fails with a {@link org.hibernate.tool.schema.spi.SchemaManagementException} if the connected database does
+	 * not match the entities.
+	 */
+	public void validateDatabase() {
+		requireConnection("validate");
+		Metadata metadata = getMetadata();
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("validate")) {
+			withContextClassLoader(() -> {
+				new SchemaValidator().validate(metadata);
+				return null;
+			});
+		}
+	}
+
+	private SchemaExport newExport(File script) {
+		SchemaExport export = new SchemaExport()
+				.setHaltOnError(true)
+				.setDelimiter(DELIMITER)
+				.setFormat(true);
+		if (script != null) {
+			export.setOutputFile(script.getAbsolutePath());
+		}
+		return export;
+	}
+
+	private void requireConnection(String action) {
+		if (connection == null) {
+			throw new IllegalStateException("A connection is required to " + action + " the database schema.");
+		}
+	}
+
+	/**
+	 * Hibernate appends to existing scripts, so the one of the last build has to go first.
+	 */
+	private static void prepare(File script) throws IOException {
+		File parent = script.getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IllegalStateException("Couldn't create dir: " + parent);
+		}
+		Files.deleteIfExists(script.toPath());
+	}
+
+	@SafeVarargs
+	private final void runConcurrently(Callable<Void>... tasks) {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (Callable<Void> task : Arrays.asList(tasks)) {
+				futures.add(executor.submit(() -> withContextClassLoader(task)));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while exporting the schema.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Failed to export the schema.", cause);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Hibernate resolves some classes through the context class loader, which has to see the project's classes.
+	 */
+	private <T> T withContextClassLoader(Callable<T> task) {
+		Thread thread = Thread.currentThread();
+		ClassLoader previous = thread.getContextClassLoader();
+		thread.setContextClassLoader(classLoader);
+		try {
+			return task.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		} finally {
+			thread.setContextClassLoader(previous);
+		}
+	}
+
+	/**
+	 * Keeps the statements Hibernate would have written to a script.
+	 */
+	private static class StatementCollector implements TargetDescriptor, ScriptTargetOutput {
+
+		private final List<String> statements = new ArrayList<>();
+
+		@Override
+		public EnumSet<TargetType> getTargetTypes() {
+			return EnumSet.of(TargetType.SCRIPT);
+		}
+
+		@Override
+		public ScriptTargetOutput getScriptTargetOutput() {
+			return this;
+		}
+
+		@Override
+		public void prepare() {
+		}
+
+		@Override
+		public void accept(String command) {
+			statements.add(command);
+		}
+
+		@Override
+		public void release() {
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import java.util.List;
+
+public class SchemaUnit {
+
+	private String name;
+	private String dialect;
+	private List<String> packagePrefixes;
+	private DbConnection connection;
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDialect() {
+		return dialect;
+	}
+
+	public void setDialect(String dialect) {
+		this.dialect = dialect;
+	}
+
+	public List<String> getPackagePrefixes() {
+		return packagePrefixes;
+	}
+
+	public void setPackagePrefixes(List<String> packagePrefixes) {
+		this.packagePrefixes = packagePrefixes;
+	}
+
+	public DbConnection getConnection() {
+		return connection;
+	}
+
+	public void setConnection(DbConnection connection) {
+		this.connection = connection;
+	}
+}
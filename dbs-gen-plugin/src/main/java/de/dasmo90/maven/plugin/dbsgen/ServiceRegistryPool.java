@@ -0,0 +1,84 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bootstrapped Hibernate service registries, kept for the whole build and keyed by their settings. A registry is
+ * used by one generator at a time, parallel builds get one each.
+ */
+public class ServiceRegistryPool implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ServiceRegistryPool.class);
+
+	private final Map<String, Deque<StandardServiceRegistry>> idle = new HashMap<>();
+	private final Map<StandardServiceRegistry, String> keys = new HashMap<>();
+	private boolean closed;
+
+	/**
+	 * @return a registry for the settings, resolving classes through the given class loader until it is released
+	 */
+	public StandardServiceRegistry acquire(Map<String, Object> settings, ClassLoader classLoader) {
+		String key = new TreeMap<>(settings).toString();
+		StandardServiceRegistry registry;
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("Service registry pool is closed.");
+			}
+			Deque<StandardServiceRegistry> registries = idle.get(key);
+			registry = registries == null ? null : registries.poll();
+		}
+		if (registry != null) {
+			LOG.debug("Reusing service registry for {}", key);
+			((SwappableClassLoaderService) registry.getService(ClassLoaderService.class)).swap(classLoader);
+			return registry;
+		}
+		LOG.debug("Bootstrapping service registry for {}", key);
+		registry = new StandardServiceRegistryBuilder()
+				.addService(ClassLoaderService.class, new SwappableClassLoaderService(classLoader))
+				.applySettings(settings)
+				.build();
+		synchronized (this) {
+			keys.put(registry, key);
+		}
+		return registry;
+	}
+
+	public synchronized void release(StandardServiceRegistry registry) {
+		String key = keys.get(registry);
+		if (key == null) {
+			throw new IllegalArgumentException("Service registry is not from this pool.");
+		}
+		if (closed) {
+			StandardServiceRegistryBuilder.destroy(registry);
+			return;
+		}
+		idle.computeIfAbsent(key, k -> new ArrayDeque<>()).push(registry);
+	}
+
+	/**
+	 * Destroys the idle registries, the ones still in use when they are released.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		List<StandardServiceRegistry> registries = new ArrayList<>();
+		idle.values().forEach(registries::addAll);
+		idle.clear();
+		for (StandardServiceRegistry registry : registries) {
+			StandardServiceRegistryBuilder.destroy(registry);
+		}
+		LOG.debug("Destroyed {} service registries.", registries.size());
+	}
+}
@@ -0,0 +1,93 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import org.h2.Driver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * An in-memory H2 database holding the schema of the previous build, so the statements migrating it can be
+ * computed without the real database. The schema is kept as H2 script between builds.
+ */
+class SnapshotDatabase implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SnapshotDatabase.class);
+
+	private final Connection connection;
+
+	private SnapshotDatabase(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * @param snapshot if it does not exist, the database starts empty and the first diff creates the whole schema
+	 */
+	static SnapshotDatabase open(File snapshot, String dialectClass) throws SQLException {
+		String url = "jdbc:h2:mem:dbs-gen-" + UUID.randomUUID() + compatibilityMode(dialectClass);
+		Connection connection = new Driver().connect(url, new Properties());
+		SnapshotDatabase database = new SnapshotDatabase(connection);
+		if (snapshot.isFile()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("RUNSCRIPT FROM " + quote(snapshot));
+			} catch (SQLException e) {
+				database.close();
+				throw e;
+			}
+			LOG.info("Loaded schema snapshot {}", snapshot);
+		} else {
+			LOG.info("No schema snapshot found at {}, diffing against an empty schema.", snapshot);
+		}
+		return database;
+	}
+
+	Connection getConnection() {
+		return connection;
+	}
+
+	void save(File snapshot) throws SQLException {
+		File parent = snapshot.getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IllegalStateException("Couldn't create dir: " + parent);
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("SCRIPT NODATA TO " + quote(snapshot));
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		connection.close();
+	}
+
+	/**
+	 * The statements are rendered in the project's dialect, H2 has to understand them.
+	 */
+	private static String compatibilityMode(String dialectClass) {
+		String[][] modes = {
+				{"MySQL", "MySQL"},
+				{"MariaDB", "MySQL"},
+				{"HSQL", "HSQLDB"},
+				{"PostgreSQL", "PostgreSQL"},
+				{"Oracle", "Oracle"},
+				{"SQLServer", "MSSQLServer"},
+				{"DB2", "DB2"},
+				{"Derby", "Derby"}
+		};
+		for (String[] mode : modes) {
+			if (dialectClass.contains(mode[0])) {
+				return ";MODE=" + mode[1];
+			}
+		}
+		return "";
+	}
+
+	private static String quote(File file) {
+		return "'" + file.getAbsolutePath().replace("'", "''") + "'";
+	}
+}
@@ -0,0 +1,71 @@
+package de.dasmo90.maven.plugin.dbsgen;
+
+import org.hibernate.boot.registry.classloading.internal.ClassLoaderServiceImpl;
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolves through the class loader of the project currently using the registry, so one registry serves module
+ * after module.
+ */
+public class SwappableClassLoaderService implements ClassLoaderService {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient volatile ClassLoaderServiceImpl delegate;
+
+	public SwappableClassLoaderService(ClassLoader classLoader) {
+		this.delegate = new ClassLoaderServiceImpl(classLoader);
+	}
+
+	public void swap(ClassLoader classLoader) {
+		ClassLoaderServiceImpl previous = delegate;
+		delegate = new ClassLoaderServiceImpl(classLoader);
+		previous.stop();
+	}
+
+	@Override
+	public <T> Class<T> classForName(String className) {
+		return delegate.classForName(className);
+	}
+
+	@Override
+	public URL locateResource(String name) {
+		return delegate.locateResource(name);
+	}
+
+	@Override
+	public InputStream locateResourceStream(String name) {
+		return delegate.locateResourceStream(name);
+	}
+
+	@Override
+	public List<URL> locateResources(String name) {
+		return delegate.locateResources(name);
+	}
+
+	@Override
+	public <S> Collection<S> loadJavaServices(Class<S> serviceContract) {
+		return delegate.loadJavaServices(serviceContract);
+	}
+
+	@Override
+	public <T> T generateProxy(InvocationHandler handler, Class... interfaces) {
+		return delegate.generateProxy(handler, interfaces);
+	}
+
+	@Override
+	public <T> T workWithClassLoader(Work<T> work) {
+		return delegate.workWithClassLoader(work);
+	}
+
+	@Override
+	public void stop() {
+		delegate.stop();
+	}
+}
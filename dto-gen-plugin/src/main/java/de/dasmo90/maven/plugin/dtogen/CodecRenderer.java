@@ -0,0 +1,371 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Renders the statements of a generated codec, which writes values to the {@link java.io.DataOutput} {@code out} and
+ * reads them from the {@link java.io.DataInput} {@code in}. Supported are primitives, their wrappers, strings, enums,
+ * DTOs with a codec, and arrays, lists, collections, sets, maps and optionals of those. Enums are written by the
+ * name of their constant, so reordering the constants keeps what is written readable. Null is written as flag or as
+ * negative length. DTOs are written as a tree: shared ones once per reference, cycles do not terminate.
+ * <p>
+ * One instance renders one codec, the local variables it declares are numbered.
+ */
+public class CodecRenderer {
+
+	private static final Map<String, String> PRIMITIVES = new HashMap<>();
+	private static final Map<String, String> WRAPPERS = new HashMap<>();
+
+	static {
+		// the suffix of the DataOutput and DataInput methods
+		PRIMITIVES.put("boolean", "Boolean");
+		PRIMITIVES.put("byte", "Byte");
+		PRIMITIVES.put("short", "Short");
+		PRIMITIVES.put("char", "Char");
+		PRIMITIVES.put("int", "Int");
+		PRIMITIVES.put("long", "Long");
+		PRIMITIVES.put("float", "Float");
+		PRIMITIVES.put("double", "Double");
+		WRAPPERS.put("java.lang.Boolean", "boolean");
+		WRAPPERS.put("java.lang.Byte", "byte");
+		WRAPPERS.put("java.lang.Short", "short");
+		WRAPPERS.put("java.lang.Character", "char");
+		WRAPPERS.put("java.lang.Integer", "int");
+		WRAPPERS.put("java.lang.Long", "long");
+		WRAPPERS.put("java.lang.Float", "float");
+		WRAPPERS.put("java.lang.Double", "double");
+	}
+
+	private final Map<String, String> oldNameToNewName;
+	private final TypeNameRewriter typeNameRewriter;
+	private final Predicate<String> hasCodec;
+	private int variables;
+
+	/**
+	 * @param hasCodec whether the DTO of an interface, by name, gets a codec
+	 */
+	CodecRenderer(Map<String, String> oldNameToNewName, Predicate<String> hasCodec) {
+		this.oldNameToNewName = oldNameToNewName;
+		this.typeNameRewriter = new TypeNameRewriter(oldNameToNewName);
+		this.hasCodec = hasCodec;
+	}
+
+	/**
+	 * Writes {@code value}, an expression without side effects, of the given type; interfaces stand for their DTOs.
+	 *
+	 * @return false if the type is not supported, the statements appended so far are incomplete then
+	 */
+	public boolean appendWrite(StringBuilder sb, String indent, Type type, String value) {
+		String name = type.getTypeName();
+		if (PRIMITIVES.containsKey(name)) {
+			sb.append(indent).append("out.write").append(PRIMITIVES.get(name)).append('(').append(value)
+					.append(");\n");
+			return true;
+		}
+		if (WRAPPERS.containsKey(name)) {
+			sb.append(indent).append("out.writeBoolean(").append(value).append(" != null);\n");
+			sb.append(indent).append("if (").append(value).append(" != null) {\n");
+			sb.append(indent).append("\tout.write").append(PRIMITIVES.get(WRAPPERS.get(name))).append('(')
+					.append(value).append(");\n");
+			sb.append(indent).append("}\n");
+			return true;
+		}
+		if (String.class.getName().equals(name) || isEnum(type)) {
+			String bytes = "bytes" + variables++;
+			sb.append(indent).append("if (").append(value).append(" == null) {\n");
+			sb.append(indent).append("\tout.writeInt(-1);\n");
+			sb.append(indent).append("} else {\n");
+			sb.append(indent).append("\tbyte[] ").append(bytes).append(" = ").append(value)
+					.append(isEnum(type) ? ".name()" : "")
+					.append(".getBytes(java.nio.charset.StandardCharsets.UTF_8);\n");
+			sb.append(indent).append("\tout.writeInt(").append(bytes).append(".length);\n");
+			sb.append(indent).append("\tout.write(").append(bytes).append(");\n");
+			sb.append(indent).append("}\n");
+			return true;
+		}
+		if (isDto(type)) {
+			sb.append(indent).append(oldNameToNewName.get(name)).append(".Codec.write(").append(value)
+					.append(", out);\n");
+			return true;
+		}
+		Type componentType = getComponentType(type);
+		if (componentType != null) {
+			if (!isCreatable(componentType)) {
+				return false;
+			}
+			String element = "element" + variables++;
+			sb.append(indent).append("if (").append(value).append(" == null) {\n");
+			sb.append(indent).append("\tout.writeInt(-1);\n");
+			sb.append(indent).append("} else {\n");
+			sb.append(indent).append("\tout.writeInt(").append(value).append(".length);\n");
+			sb.append(indent).append("\tfor (").append(typeNameRewriter.rewrite(componentType)).append(' ')
+					.append(element).append(" : ").append(value).append(") {\n");
+			if (!appendWrite(sb, indent + "\t\t", componentType, element)) {
+				return false;
+			}
+			sb.append(indent).append("\t}\n");
+			sb.append(indent).append("}\n");
+			return true;
+		}
+		if (!(type instanceof ParameterizedType)) {
+			return false;
+		}
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		for (Type argument : arguments) {
+			if (!isDeclarable(argument)) {
+				return false;
+			}
+		}
+		switch (((ParameterizedType) type).getRawType().getTypeName()) {
+			case "java.util.List":
+			case "java.util.Collection":
+			case "java.util.Set": {
+				String element = "element" + variables++;
+				sb.append(indent).append("if (").append(value).append(" == null) {\n");
+				sb.append(indent).append("\tout.writeInt(-1);\n");
+				sb.append(indent).append("} else {\n");
+				sb.append(indent).append("\tout.writeInt(").append(value).append(".size());\n");
+				sb.append(indent).append("\tfor (").append(typeNameRewriter.rewrite(arguments[0])).append(' ')
+						.append(element).append(" : ").append(value).append(") {\n");
+				if (!appendWrite(sb, indent + "\t\t", arguments[0], element)) {
+					return false;
+				}
+				sb.append(indent).append("\t}\n");
+				sb.append(indent).append("}\n");
+				return true;
+			}
+			case "java.util.Map": {
+				String entry = "entry" + variables++;
+				sb.append(indent).append("if (").append(value).append(" == null) {\n");
+				sb.append(indent).append("\tout.writeInt(-1);\n");
+				sb.append(indent).append("} else {\n");
+				sb.append(indent).append("\tout.writeInt(").append(value).append(".size());\n");
+				sb.append(indent).append("\tfor (java.util.Map.Entry<").append(typeNameRewriter.rewrite(arguments[0]))
+						.append(", ").append(typeNameRewriter.rewrite(arguments[1])).append("> ").append(entry)
+						.append(" : ").append(value).append(".entrySet()) {\n");
+				if (!appendWrite(sb, indent + "\t\t", arguments[0], entry + ".getKey()")
+						|| !appendWrite(sb, indent + "\t\t", arguments[1], entry + ".getValue()")) {
+					return false;
+				}
+				sb.append(indent).append("\t}\n");
+				sb.append(indent).append("}\n");
+				return true;
+			}
+			case "java.util.Optional":
+				// 0 for null, 1 for empty, 2 for present
+				sb.append(indent).append("out.writeByte(").append(value).append(" == null ? 0 : ").append(value)
+						.append(".isPresent() ? 2 : 1);\n");
+				sb.append(indent).append("if (").append(value).append(" != null && ").append(value)
+						.append(".isPresent()) {\n");
+				if (!appendWrite(sb, indent + "\t", arguments[0], value + ".get()")) {
+					return false;
+				}
+				sb.append(indent).append("}\n");
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Reads a value of the given type, as written by {@link #appendWrite(StringBuilder, String, Type, String)}, and
+	 * assigns it to {@code target}.
+	 *
+	 * @return false if the type is not supported, the statements appended so far are incomplete then
+	 */
+	public boolean appendRead(StringBuilder sb, String indent, Type type, String target) {
+		String name = type.getTypeName();
+		if (PRIMITIVES.containsKey(name)) {
+			sb.append(indent).append(target).append(" = in.read").append(PRIMITIVES.get(name)).append("();\n");
+			return true;
+		}
+		if (WRAPPERS.containsKey(name)) {
+			sb.append(indent).append(target).append(" = in.readBoolean() ? ").append(name).append(".valueOf(in.read")
+					.append(PRIMITIVES.get(WRAPPERS.get(name))).append("()) : null;\n");
+			return true;
+		}
+		if (String.class.getName().equals(name)) {
+			String length = "length" + variables;
+			String bytes = "bytes" + variables++;
+			sb.append(indent).append("int ").append(length).append(" = in.readInt();\n");
+			sb.append(indent).append("if (").append(length).append(" < 0) {\n");
+			sb.append(indent).append('\t').append(target).append(" = null;\n");
+			sb.append(indent).append("} else {\n");
+			sb.append(indent).append("\tbyte[] ").append(bytes).append(" = new byte[").append(length).append("];\n");
+			sb.append(indent).append("\tin.readFully(").append(bytes).append(");\n");
+			sb.append(indent).append('\t').append(target).append(" = new String(").append(bytes)
+					.append(", java.nio.charset.StandardCharsets.UTF_8);\n");
+			sb.append(indent).append("}\n");
+			return true;
+		}
+		if (isEnum(type)) {
+			String constant = "constant" + variables++;
+			sb.append(indent).append("java.lang.String ").append(constant).append(";\n");
+			appendRead(sb, indent, String.class, constant);
+			sb.append(indent).append(target).append(" = ").append(constant).append(" == null ? null : ")
+					.append(typeNameRewriter.rewrite(type)).append(".valueOf(").append(constant).append(");\n");
+			return true;
+		}
+		if (isDto(type)) {
+			sb.append(indent).append(target).append(" = ").append(oldNameToNewName.get(name))
+					.append(".Codec.read(in);\n");
+			return true;
+		}
+		Type componentType = getComponentType(type);
+		if (componentType != null) {
+			if (!isCreatable(componentType)) {
+				return false;
+			}
+			String length = "length" + variables;
+			String array = "array" + variables;
+			String index = "i" + variables++;
+			StringBuilder dimensions = new StringBuilder("[").append(length).append(']');
+			Type innermost = componentType;
+			while (getComponentType(innermost) != null) {
+				innermost = getComponentType(innermost);
+				dimensions.append("[]");
+			}
+			sb.append(indent).append("int ").append(length).append(" = in.readInt();\n");
+			sb.append(indent).append("if (").append(length).append(" < 0) {\n");
+			sb.append(indent).append('\t').append(target).append(" = null;\n");
+			sb.append(indent).append("} else {\n");
+			sb.append(indent).append('\t').append(typeNameRewriter.rewrite(type)).append(' ').append(array)
+					.append(" = new ").append(typeNameRewriter.rewrite(innermost)).append(dimensions).append(";\n");
+			sb.append(indent).append("\tfor (int ").append(index).append(" = 0; ").append(index).append(" < ")
+					.append(length).append("; ").append(index).append("++) {\n");
+			if (!appendRead(sb, indent + "\t\t", componentType, array + "[" + index + "]")) {
+				return false;
+			}
+			sb.append(indent).append("\t}\n");
+			sb.append(indent).append('\t').append(target).append(" = ").append(array).append(";\n");
+			sb.append(indent).append("}\n");
+			return true;
+		}
+		if (!(type instanceof ParameterizedType)) {
+			return false;
+		}
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		for (Type argument : arguments) {
+			if (!isDeclarable(argument)) {
+				return false;
+			}
+		}
+		String rawType = ((ParameterizedType) type).getRawType().getTypeName();
+		String copyType;
+		switch (rawType) {
+			case "java.util.List":
+			case "java.util.Collection":
+				copyType = "java.util.ArrayList";
+				break;
+			case "java.util.Set":
+				copyType = "java.util.LinkedHashSet";
+				break;
+			case "java.util.Map":
+				copyType = "java.util.LinkedHashMap";
+				break;
+			case "java.util.Optional": {
+				String state = "state" + variables;
+				String element = "element" + variables++;
+				sb.append(indent).append("byte ").append(state).append(" = in.readByte();\n");
+				sb.append(indent).append("if (").append(state).append(" == 0) {\n");
+				sb.append(indent).append('\t').append(target).append(" = null;\n");
+				sb.append(indent).append("} else if (").append(state).append(" == 1) {\n");
+				sb.append(indent).append('\t').append(target).append(" = java.util.Optional.empty();\n");
+				sb.append(indent).append("} else {\n");
+				sb.append(indent).append('\t').append(typeNameRewriter.rewrite(arguments[0])).append(' ')
+						.append(element).append(";\n");
+				if (!appendRead(sb, indent + "\t", arguments[0], element)) {
+					return false;
+				}
+				sb.append(indent).append('\t').append(target).append(" = java.util.Optional.of(").append(element)
+						.append(");\n");
+				sb.append(indent).append("}\n");
+				return true;
+			}
+			default:
+				return false;
+		}
+		String length = "length" + variables;
+		String copy = "copy" + variables;
+		String index = "i" + variables++;
+		sb.append(indent).append("int ").append(length).append(" = in.readInt();\n");
+		sb.append(indent).append("if (").append(length).append(" < 0) {\n");
+		sb.append(indent).append('\t').append(target).append(" = null;\n");
+		sb.append(indent).append("} else {\n");
+		sb.append(indent).append('\t').append(typeNameRewriter.rewrite(type)).append(' ').append(copy)
+				.append(" = new ").append(copyType).append("<>(").append(length).append(");\n");
+		sb.append(indent).append("\tfor (int ").append(index).append(" = 0; ").append(index).append(" < ")
+				.append(length).append("; ").append(index).append("++) {\n");
+		String element = "element" + variables++;
+		if (rawType.equals("java.util.Map")) {
+			String key = "key" + variables++;
+			sb.append(indent).append("\t\t").append(typeNameRewriter.rewrite(arguments[0])).append(' ').append(key)
+					.append(";\n");
+			if (!appendRead(sb, indent + "\t\t", arguments[0], key)) {
+				return false;
+			}
+			sb.append(indent).append("\t\t").append(typeNameRewriter.rewrite(arguments[1])).append(' ')
+					.append(element).append(";\n");
+			if (!appendRead(sb, indent + "\t\t", arguments[1], element)) {
+				return false;
+			}
+			sb.append(indent).append("\t\t").append(copy).append(".put(").append(key).append(", ").append(element)
+					.append(");\n");
+		} else {
+			sb.append(indent).append("\t\t").append(typeNameRewriter.rewrite(arguments[0])).append(' ')
+					.append(element).append(";\n");
+			if (!appendRead(sb, indent + "\t\t", arguments[0], element)) {
+				return false;
+			}
+			sb.append(indent).append("\t\t").append(copy).append(".add(").append(element).append(");\n");
+		}
+		sb.append(indent).append("\t}\n");
+		sb.append(indent).append('\t').append(target).append(" = ").append(copy).append(";\n");
+		sb.append(indent).append("}\n");
+		return true;
+	}
+
+	private boolean isDto(Type type) {
+		return (type instanceof Class && !((Class<?>) type).isArray() || type instanceof MirroredTypes.Named)
+				&& oldNameToNewName.containsKey(type.getTypeName()) && hasCodec.test(type.getTypeName());
+	}
+
+	private static boolean isEnum(Type type) {
+		return type instanceof Class && ((Class<?>) type).isEnum()
+				|| type instanceof MirroredTypes.Named && ((MirroredTypes.Named) type).isEnum();
+	}
+
+	/**
+	 * Whether a local variable of the type can be declared, wildcards and type variables cannot.
+	 */
+	private static boolean isDeclarable(Type type) {
+		return !(type instanceof WildcardType) && !(type instanceof TypeVariable);
+	}
+
+	/**
+	 * Whether arrays of the type can be created, arrays of generic types cannot.
+	 */
+	private static boolean isCreatable(Type type) {
+		while (getComponentType(type) != null) {
+			type = getComponentType(type);
+		}
+		return type instanceof Class || type instanceof MirroredTypes.Named;
+	}
+
+	private static Type getComponentType(Type type) {
+		if (type instanceof Class) {
+			return ((Class<?>) type).getComponentType();
+		}
+		if (type instanceof GenericArrayType) {
+			return ((GenericArrayType) type).getGenericComponentType();
+		}
+		return null;
+	}
+}
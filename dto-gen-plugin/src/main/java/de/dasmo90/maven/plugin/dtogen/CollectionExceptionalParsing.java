@@ -0,0 +1,135 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+
+import java.io.IOException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Renders the getter of a generic type whose last type argument is an interface a DTO gets generated for, e.g.
+ * {@code java.util.Set<X>} or {@code java.util.Map<K, X>}. The template gets {@code methodName}, {@code attrName},
+ * {@code interface}, {@code dto}, the source names of all type {@code arguments} and whether the DTO is
+ * {@code immutable}. Immutable DTOs keep a private copy in the field, which the getter must not hand out mutable.
+ */
+public class CollectionExceptionalParsing implements ExceptionalParsing {
+
+	private static final Set<String> CODEC_RAW_TYPES = new HashSet<>(Arrays.asList(List.class.getName(),
+			Set.class.getName(), Map.class.getName(), Optional.class.getName()));
+
+	private final String rawType;
+	private final Template template;
+	private boolean immutable;
+
+	public CollectionExceptionalParsing(String rawType, String templatePath) throws Exception {
+		this.rawType = rawType;
+		this.template = TemplateRegistry.getInstance().getTemplate(templatePath);
+	}
+
+	public String getRawType() {
+		return rawType;
+	}
+
+	public void setImmutable(boolean immutable) {
+		this.immutable = immutable;
+	}
+
+	public boolean canParse(Type type) {
+		return getElementType(type) != null;
+	}
+
+	public boolean canParse(Type type, Map<String, String> oldNameToNewName) {
+		Type elementType = getElementType(type);
+		if (elementType == null || !oldNameToNewName.containsKey(elementType.getTypeName())) {
+			return false;
+		}
+		// only the element gets replaced, the other arguments must stay as they are
+		TypeNameRewriter rewriter = new TypeNameRewriter(oldNameToNewName);
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		for (int i = 0; i < arguments.length - 1; i++) {
+			if (rewriter.references(arguments[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void parse(StringBuilder sb, DtoAttribute attr, Map<String, String> oldNameToNewName) {
+		String typeName = attr.getReturnType().getTypeName();
+		Type elementType = getElementType(attr.getReturnType());
+
+		if (elementType == null) {
+			throw new IllegalArgumentException("Cannot parse: " + typeName);
+		}
+
+		String interfac = elementType.getTypeName();
+
+		VelocityContext context = new VelocityContext();
+		context.put("methodName", attr.getMethodName());
+		context.put("attrName", attr.getName());
+		context.put("interface", TypeNameRewriter.toSourceName(elementType));
+		String dto = oldNameToNewName.get(interfac);
+		if (dto == null) {
+			throw new IllegalArgumentException("Unnecessary: " + typeName);
+		}
+		context.put("dto", dto);
+		List<String> arguments = new ArrayList<>();
+		for (Type argument : ((ParameterizedType) attr.getReturnType()).getActualTypeArguments()) {
+			arguments.add(TypeNameRewriter.toSourceName(argument));
+		}
+		context.put("arguments", arguments);
+		context.put("immutable", immutable);
+		try {
+			template.merge(context, new StringBuilderWriter(sb));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The built-in raw types are written like the codec writes them, custom ones are not supported.
+	 */
+	@Override
+	public boolean appendCodecWrite(CodecRenderer codec, StringBuilder sb, String indent, DtoAttribute attr,
+			String value) {
+		return CODEC_RAW_TYPES.contains(rawType) && codec.appendWrite(sb, indent, attr.getReturnType(), value);
+	}
+
+	@Override
+	public boolean appendCodecRead(CodecRenderer codec, StringBuilder sb, String indent, DtoAttribute attr,
+			String target) {
+		return CODEC_RAW_TYPES.contains(rawType) && codec.appendRead(sb, indent, attr.getReturnType(), target);
+	}
+
+	/**
+	 * The last type argument, if the raw type matches and the argument is a plain (not generic) type; null otherwise.
+	 */
+	private Type getElementType(Type type) {
+		if (!(type instanceof ParameterizedType)) {
+			return null;
+		}
+		ParameterizedType parameterizedType = (ParameterizedType) type;
+		Type[] arguments = parameterizedType.getActualTypeArguments();
+		if (!rawType.equals(parameterizedType.getRawType().getTypeName()) || arguments.length == 0) {
+			return null;
+		}
+		Type argument = arguments[arguments.length - 1];
+		if (argument instanceof ParameterizedType || argument instanceof WildcardType
+				|| argument instanceof GenericArrayType || argument instanceof TypeVariable
+				|| argument instanceof Class && ((Class<?>) argument).isArray()) {
+			return null;
+		}
+		return argument;
+	}
+}
@@ -0,0 +1,323 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Renders the parts of a DTO specific to the compact layout: {@code List<Integer>}, {@code List<Long>} and
+ * {@code List<Double>} are stored as primitive arrays and returned as read-only views on them, the fields are
+ * declared from the widest to the narrowest, references last, and {@code equals}/{@code hashCode} compare the
+ * fields. Immutable DTOs compute the hash in the constructor, the others compute it on every call as their getters
+ * hand out their state.
+ * <p>
+ * Attributes referencing DTOs, directly or in containers, are compared last. Immutable DTO graphs cannot be cyclic,
+ * so they are compared deeply; mutable DTOs referencing DTOs keep the identity of {@code Object}, see
+ * {@link #hasEquals(List, boolean)}.
+ */
+class CompactLayoutRenderer {
+
+	static final String CACHED_HASH_CODE = "cachedHashCode";
+	static final String COMPUTE_HASH_CODE = "computeHashCode";
+
+	private final TypeNameRewriter typeNameRewriter;
+
+	CompactLayoutRenderer(TypeNameRewriter typeNameRewriter) {
+		this.typeNameRewriter = typeNameRewriter;
+	}
+
+	enum HashCaching {
+		NONE,
+		/**
+		 * Computed by the constructor calling {@value #COMPUTE_HASH_CODE}.
+		 */
+		EAGER
+	}
+
+	/**
+	 * The storage of lists of a boxed primitive.
+	 */
+	enum PrimitiveList {
+
+		INT("int", "java.lang.Integer", "mapToInt", "IntListView", int[].class),
+		LONG("long", "java.lang.Long", "mapToLong", "LongListView", long[].class),
+		DOUBLE("double", "java.lang.Double", "mapToDouble", "DoubleListView", double[].class);
+
+		private final String primitive;
+		private final String boxed;
+		private final String mapTo;
+		private final String view;
+		private final Class<?> arrayType;
+
+		PrimitiveList(String primitive, String boxed, String mapTo, String view, Class<?> arrayType) {
+			this.primitive = primitive;
+			this.boxed = boxed;
+			this.mapTo = mapTo;
+			this.view = view;
+			this.arrayType = arrayType;
+		}
+
+		Class<?> getArrayType() {
+			return arrayType;
+		}
+
+		String getView() {
+			return view;
+		}
+
+		/**
+		 * @return the storage of the given type, null if it is not a list of one of the boxed primitives
+		 */
+		static PrimitiveList of(Type type) {
+			if (!(type instanceof ParameterizedType)
+					|| !List.class.getName().equals(((ParameterizedType) type).getRawType().getTypeName())) {
+				return null;
+			}
+			Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+			for (PrimitiveList primitiveList : values()) {
+				if (arguments.length == 1 && primitiveList.boxed.equals(arguments[0].getTypeName())) {
+					return primitiveList;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Assigns the list in {@code value} to the array in {@code field}, null elements are not allowed.
+		 */
+		void appendToArray(StringBuilder sb, String indent, String value, String field) {
+			sb.append(indent).append(field).append(" = ").append(value).append(" == null ? null : ").append(value)
+					.append(".stream().").append(mapTo).append('(').append(boxed).append("::").append(primitive)
+					.append("Value).toArray();\n");
+		}
+	}
+
+	/**
+	 * @return the attributes in the order their fields are declared
+	 */
+	List<DtoAttribute> orderFields(List<DtoAttribute> attrs) {
+		List<DtoAttribute> ordered = new ArrayList<>(attrs);
+		// stable, attributes of the same size stay ordered by name
+		ordered.sort(Comparator.comparingInt(attr -> -getFieldSize(attr.getReturnType().getTypeName())));
+		return ordered;
+	}
+
+	/**
+	 * Bytes taken by a field of the type, references count 0 so they come last.
+	 */
+	private static int getFieldSize(String typeName) {
+		switch (typeName) {
+			case "long":
+			case "double":
+				return 8;
+			case "int":
+			case "float":
+				return 4;
+			case "short":
+			case "char":
+				return 2;
+			case "byte":
+			case "boolean":
+				return 1;
+			default:
+				return 0;
+		}
+	}
+
+	String getFieldType(DtoAttribute attr) {
+		PrimitiveList primitiveList = PrimitiveList.of(attr.getReturnType());
+		return primitiveList == null
+				? typeNameRewriter.rewrite(attr.getReturnType())
+				: primitiveList.primitive + "[]";
+	}
+
+	void renderSetter(StringBuilder sb, DtoAttribute attr, PrimitiveList primitiveList) {
+		sb.append("\tpublic void set").append(attr.getMethodName()).append('(')
+				.append(typeNameRewriter.rewrite(attr.getReturnType())).append(' ').append(attr.getName())
+				.append(") {\n");
+		primitiveList.appendToArray(sb, "\t\t", attr.getName(), "this." + attr.getName());
+		sb.append("\t}\n\n");
+	}
+
+	void renderGetter(StringBuilder sb, DtoAttribute attr, PrimitiveList primitiveList) {
+		sb.append("\tpublic ").append(TypeNameRewriter.toSourceName(attr.getReturnType())).append(" get")
+				.append(attr.getMethodName()).append("() {\n");
+		sb.append("\t\treturn this.").append(attr.getName()).append(" == null ? null : new ")
+				.append(primitiveList.view).append("(this.").append(attr.getName()).append(");\n");
+		sb.append("\t}\n\n");
+	}
+
+	void renderEqualsAndHashCode(StringBuilder sb, String dto, List<DtoAttribute> attrs, HashCaching caching) {
+		List<DtoAttribute> compared = getCompared(attrs);
+		sb.append("\t@Override\n");
+		sb.append("\tpublic boolean equals(Object o) {\n");
+		sb.append("\t\tif (this == o) {\n");
+		sb.append("\t\t\treturn true;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tif (o == null || getClass() != o.getClass()) {\n");
+		sb.append("\t\t\treturn false;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\t").append(dto).append(" other = (").append(dto).append(") o;\n");
+		if (caching != HashCaching.NONE) {
+			sb.append("\t\tif (this.").append(CACHED_HASH_CODE).append(" != other.").append(CACHED_HASH_CODE)
+					.append(") {\n");
+			sb.append("\t\t\treturn false;\n");
+			sb.append("\t\t}\n");
+		}
+		if (compared.isEmpty()) {
+			sb.append("\t\treturn true");
+		}
+		for (DtoAttribute attr : compared) {
+			String field = "this." + attr.getName();
+			String otherField = "other." + attr.getName();
+			sb.append(attr == compared.get(0) ? "\t\treturn " : "\n\t\t\t\t&& ");
+			String fieldType = getFieldType(attr);
+			switch (fieldType) {
+				case "float":
+					sb.append("java.lang.Float.compare(").append(field).append(", ").append(otherField)
+							.append(") == 0");
+					break;
+				case "double":
+					sb.append("java.lang.Double.compare(").append(field).append(", ").append(otherField)
+							.append(") == 0");
+					break;
+				default:
+					if (isPrimitive(fieldType)) {
+						sb.append(field).append(" == ").append(otherField);
+					} else {
+						sb.append(getEquals(attr)).append('(').append(field).append(", ").append(otherField)
+								.append(')');
+					}
+			}
+		}
+		sb.append(";\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n");
+		sb.append("\tpublic int hashCode() {\n");
+		if (caching == HashCaching.EAGER) {
+			sb.append("\t\treturn this.").append(CACHED_HASH_CODE).append(";\n");
+			sb.append("\t}\n\n");
+			sb.append("\tprivate int ").append(COMPUTE_HASH_CODE).append("() {\n");
+		}
+		sb.append("\t\tint h = 1;\n");
+		for (DtoAttribute attr : compared) {
+			String field = "this." + attr.getName();
+			sb.append("\t\th = 31 * h + ");
+			String fieldType = getFieldType(attr);
+			if (isPrimitive(fieldType)) {
+				sb.append(getBoxedName(fieldType)).append(".hashCode(").append(field).append(')');
+			} else {
+				sb.append(getHashCode(attr)).append('(').append(field).append(')');
+			}
+			sb.append(";\n");
+		}
+		sb.append("\t\treturn h;\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * Whether {@code equals}/{@code hashCode} are rendered: mutable DTOs referencing DTOs may be part of a cycle and
+	 * are only equal to themselves.
+	 */
+	boolean hasEquals(List<DtoAttribute> attrs, boolean immutable) {
+		if (immutable) {
+			return true;
+		}
+		for (DtoAttribute attr : attrs) {
+			if (typeNameRewriter.references(attr.getReturnType())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the attributes in the order {@code equals} compares them, the ones referencing DTOs last
+	 */
+	private List<DtoAttribute> getCompared(List<DtoAttribute> attrs) {
+		List<DtoAttribute> compared = new ArrayList<>(attrs);
+		// stable, the attributes stay ordered by name otherwise
+		compared.sort(Comparator.comparing(attr -> typeNameRewriter.references(attr.getReturnType())));
+		return compared;
+	}
+
+	/**
+	 * @return the method comparing a reference field, {@code Objects} for objects, {@code Arrays} for arrays
+	 */
+	private String getEquals(DtoAttribute attr) {
+		String fieldType = getFieldType(attr);
+		if (!fieldType.endsWith("[]")) {
+			return "java.util.Objects.equals";
+		}
+		return isPrimitive(fieldType.substring(0, fieldType.length() - 2))
+				? "java.util.Arrays.equals"
+				: "java.util.Arrays.deepEquals";
+	}
+
+	private String getHashCode(DtoAttribute attr) {
+		String fieldType = getFieldType(attr);
+		if (!fieldType.endsWith("[]")) {
+			return "java.util.Objects.hashCode";
+		}
+		return isPrimitive(fieldType.substring(0, fieldType.length() - 2))
+				? "java.util.Arrays.hashCode"
+				: "java.util.Arrays.deepHashCode";
+	}
+
+	private static boolean isPrimitive(String typeName) {
+		return getFieldSize(typeName) > 0;
+	}
+
+	private static String getBoxedName(String primitive) {
+		switch (primitive) {
+			case "int":
+				return "java.lang.Integer";
+			case "char":
+				return "java.lang.Character";
+			default:
+				return "java.lang." + Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+		}
+	}
+
+	/**
+	 * @return the storages used by the attributes, their views have to be rendered
+	 */
+	static Set<PrimitiveList> getPrimitiveLists(List<DtoAttribute> attrs) {
+		Set<PrimitiveList> used = EnumSet.noneOf(PrimitiveList.class);
+		for (DtoAttribute attr : attrs) {
+			PrimitiveList primitiveList = PrimitiveList.of(attr.getReturnType());
+			if (primitiveList != null) {
+				used.add(primitiveList);
+			}
+		}
+		return used;
+	}
+
+	void renderViews(StringBuilder sb, Set<PrimitiveList> primitiveLists) {
+		for (PrimitiveList primitiveList : primitiveLists) {
+			sb.append('\n');
+			sb.append("\tprivate static final class ").append(primitiveList.view)
+					.append(" extends java.util.AbstractList<").append(primitiveList.boxed)
+					.append("> implements java.util.RandomAccess {\n\n");
+			sb.append("\t\tprivate final ").append(primitiveList.primitive).append("[] values;\n\n");
+			sb.append("\t\tprivate ").append(primitiveList.view).append('(').append(primitiveList.primitive)
+					.append("[] values) {\n");
+			sb.append("\t\t\tthis.values = values;\n");
+			sb.append("\t\t}\n\n");
+			sb.append("\t\t@Override\n");
+			sb.append("\t\tpublic ").append(primitiveList.boxed).append(" get(int index) {\n");
+			sb.append("\t\t\treturn this.values[index];\n");
+			sb.append("\t\t}\n\n");
+			sb.append("\t\t@Override\n");
+			sb.append("\t\tpublic int size() {\n");
+			sb.append("\t\t\treturn this.values.length;\n");
+			sb.append("\t\t}\n");
+			sb.append("\t}\n");
+		}
+	}
+}
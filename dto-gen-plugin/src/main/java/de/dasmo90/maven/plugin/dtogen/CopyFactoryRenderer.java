@@ -0,0 +1,424 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Renders the {@code from} factories of a DTO, which copy an instance of its interface including every nested
+ * instance of an interface a DTO is generated for. Objects reachable more than once, cycles included, are copied
+ * once, and the graph is walked by a work queue instead of recursion, so its depth does not matter. Arrays and
+ * collections of other types are copied as {@link DeepCopyRenderer} does, anything else is shared with the source.
+ * <p>
+ * Sets are filled once every copy is complete, the ones reached last first, so the elements of a set are hashed
+ * after the sets nested in them are filled.
+ * <p>
+ * Immutable DTOs are built by their builders once their nested copies are complete. The graph is walked depth first
+ * by an explicit stack, building each copy after the ones it references, and cycles are rejected with an
+ * {@link IllegalArgumentException}.
+ */
+class CopyFactoryRenderer {
+
+	private static final String CONTEXT_PARAMETERS =
+			"java.util.Map<Object, Object> copies, java.util.Deque<Runnable> pending, java.util.Deque<Runnable> sets";
+	private static final String CONTEXT_ARGUMENTS = ", copies, pending, sets)";
+	private static final String IMMUTABLE_CONTEXT_PARAMETERS =
+			"java.util.Map<Object, Object> copies, java.util.Deque<Runnable> stack";
+
+	private final Map<String, String> oldNameToNewName;
+	private final TypeNameRewriter typeNameRewriter;
+	private boolean compactLayout;
+	private boolean immutable;
+
+	CopyFactoryRenderer(Map<String, String> oldNameToNewName) {
+		this.oldNameToNewName = oldNameToNewName;
+		this.typeNameRewriter = new TypeNameRewriter(oldNameToNewName);
+	}
+
+	/**
+	 * Copies lists of boxed primitives into the arrays of the compact layout.
+	 */
+	void setCompactLayout(boolean compactLayout) {
+		this.compactLayout = compactLayout;
+	}
+
+	void setImmutable(boolean immutable) {
+		this.immutable = immutable;
+	}
+
+	void render(StringBuilder sb, DtoInterface c, String dto, List<DtoAttribute> attrs, Consumer<String> warnings) {
+		if (immutable) {
+			renderImmutable(sb, c, dto, attrs, warnings);
+			return;
+		}
+		String interfac = c.getSimpleName();
+
+		sb.append("\tpublic static ").append(dto).append(" from(").append(interfac).append(" source) {\n");
+		sb.append("\t\tjava.util.Map<Object, Object> copies = new java.util.IdentityHashMap<>();\n");
+		sb.append("\t\tjava.util.Deque<Runnable> pending = new java.util.ArrayDeque<>();\n");
+		sb.append("\t\tjava.util.Deque<Runnable> sets = new java.util.ArrayDeque<>();\n");
+		sb.append("\t\t").append(dto).append(" copy = from(source").append(CONTEXT_ARGUMENTS).append(";\n");
+		sb.append("\t\twhile (!pending.isEmpty()) {\n");
+		sb.append("\t\t\tpending.poll().run();\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\twhile (!sets.isEmpty()) {\n");
+		sb.append("\t\t\tsets.pop().run();\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn copy;\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\tpublic static ").append(dto).append(" from(").append(interfac).append(" source, ")
+				.append(CONTEXT_PARAMETERS).append(") {\n");
+		sb.append("\t\tif (source == null) {\n");
+		sb.append("\t\t\treturn null;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tObject existing = copies.get(source);\n");
+		sb.append("\t\tif (existing instanceof ").append(dto).append(") {\n");
+		sb.append("\t\t\treturn (").append(dto).append(") existing;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\t").append(dto).append(" copy = new ").append(dto).append("();\n");
+		sb.append("\t\tcopies.put(source, copy);\n");
+		sb.append("\t\tpending.push(() -> copy.copyFrom(source").append(CONTEXT_ARGUMENTS).append(");\n");
+		sb.append("\t\treturn copy;\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\tprivate void copyFrom(").append(interfac).append(" source, ").append(CONTEXT_PARAMETERS)
+				.append(") {\n");
+		appendCopies(sb, c, attrs, warnings);
+		sb.append("\t}\n");
+	}
+
+	private void renderImmutable(StringBuilder sb, DtoInterface c, String dto, List<DtoAttribute> attrs,
+			Consumer<String> warnings) {
+		String interfac = c.getSimpleName();
+
+		sb.append("\tpublic static ").append(dto).append(" from(").append(interfac).append(" source) {\n");
+		sb.append("\t\tjava.util.Map<Object, Object> copies = new java.util.IdentityHashMap<>();\n");
+		sb.append("\t\tjava.util.Deque<Runnable> stack = new java.util.ArrayDeque<>();\n");
+		sb.append("\t\tpushCopy(source, copies, stack);\n");
+		sb.append("\t\twhile (!stack.isEmpty()) {\n");
+		sb.append("\t\t\tstack.peek().run();\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn (").append(dto).append(") copies.get(source);\n");
+		sb.append("\t}\n\n");
+
+		// the first run pushes the referenced sources, the second one builds the copy from their copies
+		sb.append("\tpublic static void pushCopy(").append(interfac).append(" source, ")
+				.append(IMMUTABLE_CONTEXT_PARAMETERS).append(") {\n");
+		sb.append("\t\tif (source == null) {\n");
+		sb.append("\t\t\treturn;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tstack.push(new Runnable() {\n\n");
+		sb.append("\t\t\tprivate boolean expanded;\n\n");
+		sb.append("\t\t\t@Override\n");
+		sb.append("\t\t\tpublic void run() {\n");
+		sb.append("\t\t\t\tObject existing = copies.get(source);\n");
+		sb.append("\t\t\t\tif (expanded) {\n");
+		sb.append("\t\t\t\t\tstack.pop();\n");
+		sb.append("\t\t\t\t\tcopies.put(source, copyFrom(source, copies));\n");
+		// while its references are copied, a source is mapped to itself, the source may be a DTO itself
+		sb.append("\t\t\t\t} else if (existing == source) {\n");
+		sb.append("\t\t\t\t\tthrow new IllegalArgumentException(\"Cannot copy cyclic graphs into immutable DTOs: \"\n");
+		sb.append("\t\t\t\t\t\t\t+ source.getClass().getName());\n");
+		sb.append("\t\t\t\t} else if (existing != null) {\n");
+		sb.append("\t\t\t\t\tstack.pop();\n");
+		sb.append("\t\t\t\t} else {\n");
+		sb.append("\t\t\t\t\tcopies.put(source, source);\n");
+		sb.append("\t\t\t\t\texpanded = true;\n");
+		sb.append("\t\t\t\t\tpushReferences(source, copies, stack);\n");
+		sb.append("\t\t\t\t}\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t});\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\tprivate static void pushReferences(").append(interfac).append(" source, ")
+				.append(IMMUTABLE_CONTEXT_PARAMETERS).append(") {\n");
+		for (DtoAttribute attr : attrs) {
+			appendPushes(sb, attr);
+		}
+		sb.append("\t}\n\n");
+
+		sb.append("\tprivate static ").append(dto).append(" copyFrom(").append(interfac)
+				.append(" source, java.util.Map<Object, Object> copies) {\n");
+		sb.append("\t\t").append(ImmutableRenderer.BUILDER).append(" builder = builder();\n");
+		appendCopies(sb, c, attrs, warnings);
+		sb.append("\t\treturn builder.build();\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * Pushes the copies of the DTOs an attribute references, in the places {@link #appendCopy} copies them from.
+	 */
+	private void appendPushes(StringBuilder sb, DtoAttribute attr) {
+		Type type = attr.getReturnType();
+		String getter = "source.get" + attr.getMethodName() + "()";
+		if (!typeNameRewriter.references(type)) {
+			return;
+		}
+		if (isDto(type)) {
+			appendPush(sb, "\t\t", type, getter);
+			return;
+		}
+		if (getComponentType(type) != null && isDto(getInnermostComponentType(type))) {
+			sb.append("\t\t{\n");
+			sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+					.append(";\n");
+			appendArrayPushes(sb, type, "value", "\t\t\t", 0);
+			sb.append("\t\t}\n");
+			return;
+		}
+		if (!(type instanceof ParameterizedType)) {
+			return;
+		}
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		Type element = arguments[arguments.length - 1];
+		if (!isDto(element)) {
+			return;
+		}
+		String elements;
+		switch (((ParameterizedType) type).getRawType().getTypeName()) {
+			case "java.util.List":
+			case "java.util.Collection":
+			case "java.util.Set":
+				elements = "value";
+				break;
+			case "java.util.Map":
+				if (typeNameRewriter.references(arguments[0])) {
+					return;
+				}
+				elements = "value.values()";
+				break;
+			case "java.util.Optional":
+				sb.append("\t\t{\n");
+				sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+						.append(";\n");
+				sb.append("\t\t\tif (value != null && value.isPresent()) {\n");
+				appendPush(sb, "\t\t\t\t", element, "value.get()");
+				sb.append("\t\t\t}\n");
+				sb.append("\t\t}\n");
+				return;
+			default:
+				return;
+		}
+		sb.append("\t\t{\n");
+		sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+				.append(";\n");
+		sb.append("\t\t\tif (value != null) {\n");
+		sb.append("\t\t\t\tfor (").append(TypeNameRewriter.toSourceName(element)).append(" element : ")
+				.append(elements).append(") {\n");
+		appendPush(sb, "\t\t\t\t\t", element, "element");
+		sb.append("\t\t\t\t}\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t}\n");
+	}
+
+	private void appendArrayPushes(StringBuilder sb, Type type, String from, String indent, int depth) {
+		Type componentType = getComponentType(type);
+		String index = "i" + depth;
+		String element = from + "[" + index + "]";
+		sb.append(indent).append("if (").append(from).append(" != null) {\n");
+		sb.append(indent).append("\tfor (int ").append(index).append(" = 0; ").append(index).append(" < ")
+				.append(from).append(".length; ").append(index).append("++) {\n");
+		if (getComponentType(componentType) != null) {
+			appendArrayPushes(sb, componentType, element, indent + "\t\t", depth + 1);
+		} else {
+			appendPush(sb, indent + "\t\t", componentType, element);
+		}
+		sb.append(indent).append("\t}\n");
+		sb.append(indent).append("}\n");
+	}
+
+	private void appendPush(StringBuilder sb, String indent, Type type, String source) {
+		sb.append(indent).append(typeNameRewriter.rewrite(type)).append(".pushCopy(").append(source)
+				.append(", copies, stack);\n");
+	}
+
+	private void appendCopies(StringBuilder sb, DtoInterface c, List<DtoAttribute> attrs, Consumer<String> warnings) {
+		DeepCopyRenderer deepCopyRenderer = new DeepCopyRenderer(typeNameRewriter, false);
+		for (DtoAttribute attr : attrs) {
+			if (!appendCopy(sb, attr, deepCopyRenderer)) {
+				warnings.accept("Copy factory of " + c.getName() + " leaves \"" + attr.getName()
+						+ "\" unset, cannot copy " + TypeNameRewriter.toSourceName(attr.getReturnType()));
+			}
+		}
+	}
+
+	private boolean appendCopy(StringBuilder sb, DtoAttribute attr, DeepCopyRenderer deepCopyRenderer) {
+		Type type = attr.getReturnType();
+		// the builder of an immutable DTO takes the lists as they are, its constructor converts them
+		String field = (immutable ? "builder." : "this.") + attr.getName();
+		String getter = "source.get" + attr.getMethodName() + "()";
+		CompactLayoutRenderer.PrimitiveList primitiveList = compactLayout && !immutable
+				? CompactLayoutRenderer.PrimitiveList.of(type)
+				: null;
+		if (primitiveList != null) {
+			sb.append("\t\t{\n");
+			sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+					.append(";\n");
+			primitiveList.appendToArray(sb, "\t\t\t", "value", field);
+			sb.append("\t\t}\n");
+			return true;
+		}
+		// the constructor of an immutable DTO copies what it is built from
+		if (!typeNameRewriter.references(type) && !immutable && DeepCopyRenderer.needsCopy(type)) {
+			sb.append("\t\t{\n");
+			sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+					.append(";\n");
+			deepCopyRenderer.appendCopy(sb, "\t\t\t", type, "value", field);
+			sb.append("\t\t}\n");
+			return true;
+		}
+		if (!typeNameRewriter.references(type)) {
+			sb.append("\t\t").append(field).append(" = ").append(getter).append(";\n");
+			return true;
+		}
+		if (isDto(type)) {
+			sb.append("\t\t").append(field).append(" = ").append(getCopy(type, getter)).append(";\n");
+			return true;
+		}
+		if (getComponentType(type) != null && isDto(getInnermostComponentType(type))) {
+			sb.append("\t\t{\n");
+			sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+					.append(";\n");
+			appendArrayCopy(sb, type, "value", field, "\t\t\t", 0);
+			sb.append("\t\t}\n");
+			return true;
+		}
+		if (!(type instanceof ParameterizedType)) {
+			return false;
+		}
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		Type element = arguments[arguments.length - 1];
+		for (int i = 0; i < arguments.length - 1; i++) {
+			if (typeNameRewriter.references(arguments[i])) {
+				return false;
+			}
+		}
+		if (!isDto(element)) {
+			return false;
+		}
+		String rawType = ((ParameterizedType) type).getRawType().getTypeName();
+		String copyType;
+		switch (rawType) {
+			case "java.util.List":
+			case "java.util.Collection":
+				copyType = "java.util.ArrayList";
+				break;
+			case "java.util.Set":
+				copyType = "java.util.LinkedHashSet";
+				break;
+			case "java.util.Map":
+				copyType = "java.util.LinkedHashMap";
+				break;
+			case "java.util.Optional":
+				sb.append("\t\t{\n");
+				sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+						.append(";\n");
+				sb.append("\t\t\t").append(field).append(" = value == null ? null : value.map(element -> ")
+						.append(getCopy(element, "element")).append(");\n");
+				sb.append("\t\t}\n");
+				return true;
+			default:
+				return false;
+		}
+
+		String dtoType = typeNameRewriter.rewrite(type);
+		String elementDto = typeNameRewriter.rewrite(element);
+		sb.append("\t\t{\n");
+		sb.append("\t\t\t").append(TypeNameRewriter.toSourceName(type)).append(" value = ").append(getter)
+				.append(";\n");
+		sb.append("\t\t\tif (value == null) {\n");
+		sb.append("\t\t\t\t").append(field).append(" = null;\n");
+		sb.append("\t\t\t} else {\n");
+		sb.append("\t\t\t\t").append(dtoType).append(" copy = new ").append(copyType).append("<>();\n");
+		if (rawType.equals("java.util.Map")) {
+			sb.append("\t\t\t\tfor (java.util.Map.Entry<").append(TypeNameRewriter.toSourceName(arguments[0]))
+					.append(", ").append(TypeNameRewriter.toSourceName(element)).append("> entry : value.entrySet()) {\n");
+			sb.append("\t\t\t\t\tcopy.put(entry.getKey(), ").append(getCopy(element, "entry.getValue()"))
+					.append(");\n");
+			sb.append("\t\t\t\t}\n");
+		} else if (rawType.equals("java.util.Set") && !immutable) {
+			sb.append("\t\t\t\tjava.util.List<").append(elementDto).append("> elements = new java.util.ArrayList<>();\n");
+			sb.append("\t\t\t\tfor (").append(TypeNameRewriter.toSourceName(element)).append(" element : value) {\n");
+			sb.append("\t\t\t\t\telements.add(").append(getCopy(element, "element")).append(");\n");
+			sb.append("\t\t\t\t}\n");
+			sb.append("\t\t\t\tsets.push(() -> copy.addAll(elements));\n");
+		} else {
+			sb.append("\t\t\t\tfor (").append(TypeNameRewriter.toSourceName(element)).append(" element : value) {\n");
+			sb.append("\t\t\t\t\tcopy.add(").append(getCopy(element, "element")).append(");\n");
+			sb.append("\t\t\t\t}\n");
+		}
+		sb.append("\t\t\t\t").append(field).append(" = copy;\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t}\n");
+		return true;
+	}
+
+	/**
+	 * Copies arrays of any dimension element by element, one loop per dimension.
+	 */
+	private void appendArrayCopy(StringBuilder sb, Type type, String from, String to, String indent, int depth) {
+		Type componentType = getComponentType(type);
+		String copy = "copy" + depth;
+		String index = "i" + depth;
+		sb.append(indent).append("if (").append(from).append(" == null) {\n");
+		sb.append(indent).append('\t').append(to).append(" = null;\n");
+		sb.append(indent).append("} else {\n");
+		StringBuilder creation = new StringBuilder();
+		Type innermost = type;
+		while (getComponentType(innermost) != null) {
+			innermost = getComponentType(innermost);
+			creation.append(creation.length() == 0 ? "[" + from + ".length]" : "[]");
+		}
+		sb.append(indent).append('\t').append(typeNameRewriter.rewrite(type)).append(' ').append(copy)
+				.append(" = new ").append(typeNameRewriter.rewrite(innermost)).append(creation).append(";\n");
+		sb.append(indent).append("\tfor (int ").append(index).append(" = 0; ").append(index).append(" < ")
+				.append(from).append(".length; ").append(index).append("++) {\n");
+		String element = from + "[" + index + "]";
+		String target = copy + "[" + index + "]";
+		if (getComponentType(componentType) != null) {
+			appendArrayCopy(sb, componentType, element, target, indent + "\t\t", depth + 1);
+		} else {
+			sb.append(indent).append("\t\t").append(target).append(" = ").append(getCopy(componentType, element))
+					.append(";\n");
+		}
+		sb.append(indent).append("\t}\n");
+		sb.append(indent).append('\t').append(to).append(" = ").append(copy).append(";\n");
+		sb.append(indent).append("}\n");
+	}
+
+	/**
+	 * @return the copy of the DTO in {@code source}, looked up in the copies made so far if the DTOs are immutable
+	 */
+	private String getCopy(Type type, String source) {
+		String dto = typeNameRewriter.rewrite(type);
+		return immutable
+				? "(" + dto + ") copies.get(" + source + ")"
+				: dto + ".from(" + source + CONTEXT_ARGUMENTS;
+	}
+
+	private boolean isDto(Type type) {
+		return (type instanceof Class && !((Class<?>) type).isArray() || type instanceof MirroredTypes.Named)
+				&& oldNameToNewName.containsKey(type.getTypeName());
+	}
+
+	private static Type getComponentType(Type type) {
+		if (type instanceof Class) {
+			return ((Class<?>) type).getComponentType();
+		}
+		if (type instanceof GenericArrayType) {
+			return ((GenericArrayType) type).getGenericComponentType();
+		}
+		return null;
+	}
+
+	private static Type getInnermostComponentType(Type type) {
+		while (getComponentType(type) != null) {
+			type = getComponentType(type);
+		}
+		return type;
+	}
+}
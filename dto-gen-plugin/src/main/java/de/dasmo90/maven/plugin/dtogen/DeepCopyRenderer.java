@@ -0,0 +1,207 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+
+/**
+ * Renders the statements copying a value so that the copy shares nothing mutable with it: arrays are cloned, lists,
+ * collections, sets and maps are copied, and optionals holding one of those get a copy, at every level of nesting.
+ * Other values, map keys included, are shared. DTOs have to be copied by the caller. Optionally the copied
+ * collections are wrapped unmodifiable.
+ * <p>
+ * One instance renders one method, the local variables it declares are numbered.
+ */
+class DeepCopyRenderer {
+
+	private final TypeNameRewriter typeNameRewriter;
+	private final boolean unmodifiable;
+	private int variables;
+
+	DeepCopyRenderer(TypeNameRewriter typeNameRewriter, boolean unmodifiable) {
+		this.typeNameRewriter = typeNameRewriter;
+		this.unmodifiable = unmodifiable;
+	}
+
+	/**
+	 * Whether a value of the type shares mutable state with a copy made by assignment.
+	 */
+	static boolean needsCopy(Type type) {
+		if (getComponentType(type) != null || getCopyType(type) != null) {
+			return true;
+		}
+		return isOptional(type) && needsCopy(((ParameterizedType) type).getActualTypeArguments()[0]);
+	}
+
+	/**
+	 * Whether the type is or has an array anywhere in its type arguments.
+	 */
+	static boolean containsArray(Type type) {
+		if (getComponentType(type) != null) {
+			return true;
+		}
+		if (type instanceof ParameterizedType) {
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				if (containsArray(argument)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Assigns a copy of {@code from}, an expression without side effects, to {@code to}.
+	 */
+	void appendCopy(StringBuilder sb, String indent, Type type, String from, String to) {
+		Type componentType = getComponentType(type);
+		if (componentType != null) {
+			appendArrayCopy(sb, indent, type, componentType, from, to);
+			return;
+		}
+		String copyType = getCopyType(type);
+		if (copyType != null) {
+			appendCollectionCopy(sb, indent, (ParameterizedType) type, copyType, from, to);
+			return;
+		}
+		if (isOptional(type) && needsCopy(((ParameterizedType) type).getActualTypeArguments()[0])) {
+			Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (isDeclarable(element)) {
+				String value = "value" + variables++;
+				sb.append(indent).append("if (").append(from).append(" == null || !").append(from)
+						.append(".isPresent()) {\n");
+				sb.append(indent).append('\t').append(to).append(" = ").append(from).append(";\n");
+				sb.append(indent).append("} else {\n");
+				sb.append(indent).append('\t').append(typeNameRewriter.rewrite(element)).append(' ').append(value)
+						.append(";\n");
+				appendCopy(sb, indent + "\t", element, from + ".get()", value);
+				sb.append(indent).append('\t').append(to).append(" = java.util.Optional.of(").append(value)
+						.append(");\n");
+				sb.append(indent).append("}\n");
+				return;
+			}
+		}
+		sb.append(indent).append(to).append(" = ").append(from).append(";\n");
+	}
+
+	private void appendArrayCopy(StringBuilder sb, String indent, Type type, Type componentType, String from,
+			String to) {
+		if (!needsCopy(componentType)) {
+			sb.append(indent).append(to).append(" = ").append(from).append(" == null ? null : ").append(from)
+					.append(".clone();\n");
+			return;
+		}
+		String copy = "copy" + variables;
+		String index = "i" + variables++;
+		String element = copy + "[" + index + "]";
+		sb.append(indent).append("if (").append(from).append(" == null) {\n");
+		sb.append(indent).append('\t').append(to).append(" = null;\n");
+		sb.append(indent).append("} else {\n");
+		sb.append(indent).append('\t').append(typeNameRewriter.rewrite(type)).append(' ').append(copy).append(" = ")
+				.append(from).append(".clone();\n");
+		sb.append(indent).append("\tfor (int ").append(index).append(" = 0; ").append(index).append(" < ")
+				.append(copy).append(".length; ").append(index).append("++) {\n");
+		appendCopy(sb, indent + "\t\t", componentType, element, element);
+		sb.append(indent).append("\t}\n");
+		sb.append(indent).append('\t').append(to).append(" = ").append(copy).append(";\n");
+		sb.append(indent).append("}\n");
+	}
+
+	private void appendCollectionCopy(StringBuilder sb, String indent, ParameterizedType type, String copyType,
+			String from, String to) {
+		Type[] arguments = type.getActualTypeArguments();
+		Type element = arguments[arguments.length - 1];
+		if (!needsCopy(element) || !isDeclarable(element) || !isDeclarable(arguments[0])) {
+			sb.append(indent).append(to).append(" = ").append(from).append(" == null ? null : ")
+					.append(wrap(type, "new " + copyType + "<>(" + from + ")")).append(";\n");
+			return;
+		}
+		boolean map = arguments.length == 2;
+		String copy = "copy" + variables;
+		String entry = (map ? "entry" : "element") + variables;
+		String value = "value" + variables++;
+		String elementName = typeNameRewriter.rewrite(element);
+		sb.append(indent).append("if (").append(from).append(" == null) {\n");
+		sb.append(indent).append('\t').append(to).append(" = null;\n");
+		sb.append(indent).append("} else {\n");
+		sb.append(indent).append('\t').append(copyType).append('<');
+		if (map) {
+			sb.append(typeNameRewriter.rewrite(arguments[0])).append(", ");
+		}
+		sb.append(elementName).append("> ").append(copy).append(" = new ").append(copyType).append("<>(")
+				.append(from).append(".size());\n");
+		if (map) {
+			sb.append(indent).append("\tfor (java.util.Map.Entry<").append(typeNameRewriter.rewrite(arguments[0]))
+					.append(", ").append(elementName).append("> ").append(entry).append(" : ").append(from)
+					.append(".entrySet()) {\n");
+		} else {
+			sb.append(indent).append("\tfor (").append(elementName).append(' ').append(entry).append(" : ")
+					.append(from).append(") {\n");
+		}
+		sb.append(indent).append("\t\t").append(elementName).append(' ').append(value).append(";\n");
+		appendCopy(sb, indent + "\t\t", element, map ? entry + ".getValue()" : entry, value);
+		sb.append(indent).append("\t\t").append(copy);
+		if (map) {
+			sb.append(".put(").append(entry).append(".getKey(), ");
+		} else {
+			sb.append(".add(");
+		}
+		sb.append(value).append(");\n");
+		sb.append(indent).append("\t}\n");
+		sb.append(indent).append('\t').append(to).append(" = ").append(wrap(type, copy)).append(";\n");
+		sb.append(indent).append("}\n");
+	}
+
+	private String wrap(ParameterizedType type, String copy) {
+		if (!unmodifiable) {
+			return copy;
+		}
+		String rawType = type.getRawType().getTypeName();
+		return "java.util.Collections.unmodifiable" + rawType.substring(rawType.lastIndexOf('.') + 1) + "(" + copy
+				+ ")";
+	}
+
+	/**
+	 * @return the collection a list, collection, set or map is copied into, null for other types
+	 */
+	private static String getCopyType(Type type) {
+		if (!(type instanceof ParameterizedType)) {
+			return null;
+		}
+		switch (((ParameterizedType) type).getRawType().getTypeName()) {
+			case "java.util.List":
+			case "java.util.Collection":
+				return "java.util.ArrayList";
+			case "java.util.Set":
+				return "java.util.LinkedHashSet";
+			case "java.util.Map":
+				return "java.util.LinkedHashMap";
+			default:
+				return null;
+		}
+	}
+
+	private static boolean isOptional(Type type) {
+		return type instanceof ParameterizedType
+				&& "java.util.Optional".equals(((ParameterizedType) type).getRawType().getTypeName());
+	}
+
+	/**
+	 * Whether a local variable of the type can be declared, wildcards and type variables cannot.
+	 */
+	private static boolean isDeclarable(Type type) {
+		return !(type instanceof WildcardType) && !(type instanceof TypeVariable);
+	}
+
+	static Type getComponentType(Type type) {
+		if (type instanceof Class) {
+			return ((Class<?>) type).getComponentType();
+		}
+		if (type instanceof GenericArrayType) {
+			return ((GenericArrayType) type).getGenericComponentType();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,208 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.DuplicateMemberException;
+import javassist.bytecode.FieldInfo;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import javassist.bytecode.SignatureAttribute;
+import javassist.bytecode.StackMapTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes the class file of a DTO directly, with the members the generator would render as source: a private field
+ * per attribute, optionally its setter, and the getter. Field, setter and getter keep their generic signatures.
+ */
+class DtoBytecodeEmitter {
+
+	private static final String OBJECT = "java.lang.Object";
+	private static final String COLLECTION_CONSTRUCTOR = "(Ljava/util/Collection;)V";
+	private static final String MAP_CONSTRUCTOR = "(Ljava/util/Map;)V";
+
+	private final TypeDescriptors rewritten;
+
+	DtoBytecodeEmitter(Map<String, String> oldNameToNewName) {
+		this.rewritten = new TypeDescriptors(oldNameToNewName);
+	}
+
+	/**
+	 * @param copyTypes the class a getter copies its field into, e.g. {@code java.util.ArrayList}; null if the
+	 *                  field is returned as it is
+	 */
+	byte[] emit(String dtoName, String interfaceName, List<DtoAttribute> attrs,
+			Function<DtoAttribute, String> copyTypes, boolean generateSetters) {
+		ClassFile classFile = new ClassFile(false, dtoName, OBJECT);
+		classFile.setMajorVersion(ClassFile.JAVA_8);
+		classFile.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.SUPER);
+		classFile.setInterfaces(new String[]{interfaceName});
+		ConstPool constPool = classFile.getConstPool();
+
+		addMethod(classFile, constructor(constPool));
+		for (DtoAttribute attr : attrs) {
+			String fieldDescriptor = rewritten.descriptor(attr.getReturnType());
+			FieldInfo field = new FieldInfo(constPool, attr.getName(), fieldDescriptor);
+			field.setAccessFlags(AccessFlag.PRIVATE);
+			String fieldSignature = rewritten.signature(attr.getReturnType());
+			if (fieldSignature != null) {
+				field.addAttribute(new SignatureAttribute(constPool, fieldSignature));
+			}
+			addField(classFile, field);
+
+			if (generateSetters) {
+				MethodInfo setter = new MethodInfo(constPool, "set" + attr.getMethodName(),
+						"(" + fieldDescriptor + ")V");
+				setter.setAccessFlags(AccessFlag.PUBLIC);
+				setter.setCodeAttribute(setterCode(constPool, dtoName, attr.getName(), fieldDescriptor));
+				if (fieldSignature != null) {
+					setter.addAttribute(new SignatureAttribute(constPool, "(" + fieldSignature + ")V"));
+				}
+				addMethod(classFile, setter);
+			}
+
+			TypeDescriptors plain = TypeDescriptors.plain();
+			MethodInfo getter = new MethodInfo(constPool, "get" + attr.getMethodName(),
+					"()" + plain.descriptor(attr.getReturnType()));
+			getter.setAccessFlags(AccessFlag.PUBLIC);
+			String copyType = copyTypes.apply(attr);
+			getter.setCodeAttribute(copyType == null
+					? getterCode(constPool, dtoName, attr.getName(), fieldDescriptor)
+					: copyingGetterCode(constPool, dtoName, attr.getName(), fieldDescriptor, copyType));
+			String getterSignature = plain.signature(attr.getReturnType());
+			if (getterSignature != null) {
+				getter.addAttribute(new SignatureAttribute(constPool, "()" + getterSignature));
+			}
+			addMethod(classFile, getter);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			classFile.write(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static MethodInfo constructor(ConstPool constPool) {
+		MethodInfo constructor = new MethodInfo(constPool, MethodInfo.nameInit, "()V");
+		constructor.setAccessFlags(AccessFlag.PUBLIC);
+		Bytecode code = new Bytecode(constPool, 1, 1);
+		code.addAload(0);
+		code.addInvokespecial(OBJECT, MethodInfo.nameInit, "()V");
+		code.addOpcode(Opcode.RETURN);
+		constructor.setCodeAttribute(code.toCodeAttribute());
+		return constructor;
+	}
+
+	private static CodeAttribute setterCode(ConstPool constPool, String dtoName, String fieldName,
+			String descriptor) {
+		int size = size(descriptor);
+		Bytecode code = new Bytecode(constPool, 1 + size, 1 + size);
+		code.addAload(0);
+		switch (descriptor.charAt(0)) {
+			case 'J':
+				code.addLload(1);
+				break;
+			case 'F':
+				code.addFload(1);
+				break;
+			case 'D':
+				code.addDload(1);
+				break;
+			case 'L':
+			case '[':
+				code.addAload(1);
+				break;
+			default:
+				code.addIload(1);
+		}
+		code.addPutfield(dtoName, fieldName, descriptor);
+		code.addOpcode(Opcode.RETURN);
+		return code.toCodeAttribute();
+	}
+
+	private static CodeAttribute getterCode(ConstPool constPool, String dtoName, String fieldName,
+			String descriptor) {
+		Bytecode code = new Bytecode(constPool, size(descriptor), 1);
+		code.addAload(0);
+		code.addGetfield(dtoName, fieldName, descriptor);
+		code.addOpcode(returnOpcode(descriptor));
+		return code.toCodeAttribute();
+	}
+
+	/**
+	 * {@code return this.field == null ? null : new CopyType(this.field);}
+	 */
+	private static CodeAttribute copyingGetterCode(ConstPool constPool, String dtoName, String fieldName,
+			String descriptor, String copyType) {
+		Bytecode code = new Bytecode(constPool, 3, 1);
+		code.addAload(0);
+		code.addGetfield(dtoName, fieldName, descriptor);
+		code.addOpcode(Opcode.IFNONNULL);
+		// skips the branch instruction itself, aconst_null and areturn
+		code.addIndex(5);
+		code.addOpcode(Opcode.ACONST_NULL);
+		code.addOpcode(Opcode.ARETURN);
+		int copyOffset = code.currentPc();
+		code.addNew(copyType);
+		code.addOpcode(Opcode.DUP);
+		code.addAload(0);
+		code.addGetfield(dtoName, fieldName, descriptor);
+		code.addInvokespecial(copyType, MethodInfo.nameInit,
+				copyType.endsWith("Map") ? MAP_CONSTRUCTOR : COLLECTION_CONSTRUCTOR);
+		code.addOpcode(Opcode.ARETURN);
+
+		CodeAttribute codeAttribute = code.toCodeAttribute();
+		StackMapTable.Writer frames = new StackMapTable.Writer(32);
+		frames.sameFrame(copyOffset);
+		codeAttribute.setAttribute(frames.toStackMapTable(constPool));
+		return codeAttribute;
+	}
+
+	private static int size(String descriptor) {
+		return descriptor.equals("J") || descriptor.equals("D") ? 2 : 1;
+	}
+
+	private static int returnOpcode(String descriptor) {
+		switch (descriptor.charAt(0)) {
+			case 'J':
+				return Opcode.LRETURN;
+			case 'F':
+				return Opcode.FRETURN;
+			case 'D':
+				return Opcode.DRETURN;
+			case 'L':
+			case '[':
+				return Opcode.ARETURN;
+			default:
+				return Opcode.IRETURN;
+		}
+	}
+
+	private static void addField(ClassFile classFile, FieldInfo field) {
+		try {
+			classFile.addField(field);
+		} catch (DuplicateMemberException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void addMethod(ClassFile classFile, MethodInfo method) {
+		try {
+			classFile.addMethod(method);
+		} catch (DuplicateMemberException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
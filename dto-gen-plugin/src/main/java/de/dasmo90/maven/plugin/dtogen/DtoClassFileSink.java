@@ -0,0 +1,8 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.io.IOException;
+
+public interface DtoClassFileSink {
+
+	void accept(String name, byte[] classFile) throws IOException;
+}
@@ -1,17 +1,32 @@
 package de.dasmo90.maven.plugin.dtogen;
 
-import org.apache.commons.lang3.ArrayUtils;
-import org.codehaus.plexus.util.CollectionUtils;
+import de.dasmo90.maven.plugin.base.Instrumentation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -19,7 +34,12 @@ import java.util.stream.Collectors;
 public class DtoClassGenerator {
 
 	public static final String GET_METHOD_REGEX = "get([A-Z])(.*)";
+	public static final String SUFFIX_REGEX = "[A-Z][A-Za-z].*";
 	public static final String CLASS_NAME_REGEX = "([a-zA-Z_$][a-zA-Z\\d_$]*\\.)*[a-zA-Z_$][a-zA-Z\\d_$]*";
+	public static final String SET_TEMPLATE_PATH = "velocity/java.util.Set.java.vm";
+	public static final String OPTIONAL_TEMPLATE_PATH = "velocity/java.util.Optional.java.vm";
+	public static final String MAP_TEMPLATE_PATH = "velocity/java.util.Map.java.vm";
+	static final Pattern GET_METHOD_PATTERN = Pattern.compile(GET_METHOD_REGEX);
 	public static final int NOT_PARSEABLE = -2;
 	public static final int PARSEABLE = -1;
 	private static final String SEMI_COLON_NEW_LINE = ";\n";
@@ -30,81 +50,171 @@ public class DtoClassGenerator {
 	private static final String OPEN_PARENTHESIS = "(";
 	private static final String CLOSE_PARENTHESIS = ")";
 	private static final Logger LOG = LoggerFactory.getLogger(DtoClassGenerator.class);
+	private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(4096));
 
-	private final List<Class> interfaces;
+	private final List<DtoInterface> interfaces;
 	private final String suffix;
 	private final boolean generateSetters;
-	private final ExceptionalParsing[] exceptionalParsings;
-	private final List<Class> collectedInterfaces = new LinkedList<>();
+	private final List<ExceptionalParsing> exceptionalParsings = new ArrayList<>();
+	private final List<DtoInterface> collectedInterfaces = new LinkedList<>();
 	private final Map<String, String> oldNameToNewName = new HashMap<>();
+	private final TypeNameRewriter typeNameRewriter = new TypeNameRewriter(oldNameToNewName);
+	private final Map<ExceptionalParsing, String> builtInCopyTypes = new IdentityHashMap<>();
+	private final DtoBytecodeEmitter bytecodeEmitter = new DtoBytecodeEmitter(oldNameToNewName);
+	private final CopyFactoryRenderer copyFactoryRenderer = new CopyFactoryRenderer(oldNameToNewName);
+	private final CompactLayoutRenderer compactLayoutRenderer = new CompactLayoutRenderer(typeNameRewriter);
+	private final ImmutableRenderer immutableRenderer = new ImmutableRenderer(typeNameRewriter);
+	private boolean generateCopyFactories;
+	private boolean compactLayout;
+	private boolean immutable;
+	private boolean generateCodecs;
+	private final Set<String> codecs = new HashSet<>();
 	private List<DtoClass> generated;
-	private List<DtoAttribute> attrs;
+	private boolean collected;
+	private int threads = 1;
+	private Instrumentation instrumentation = Instrumentation.NONE;
+	private Consumer<String> warnings = LOG::warn;
 
 	public DtoClassGenerator(String suffix, List<Class<?>> interfaces, boolean generateSetters) throws
 			Exception {
+		this(suffix, generateSetters, interfaces.stream().map(ReflectedInterface::new).collect(Collectors.toList()));
+	}
+
+	DtoClassGenerator(String suffix, boolean generateSetters, List<? extends DtoInterface> interfaces) throws
+			Exception {
 		this.suffix = suffix;
 		this.interfaces = new LinkedList<>(interfaces);
 		this.generateSetters = generateSetters;
-		exceptionalParsings = new ExceptionalParsing[]{new ListExceptionalParsing()};
+		addBuiltIn(new ListExceptionalParsing(), ArrayList.class);
+		addBuiltIn(new CollectionExceptionalParsing(Set.class.getName(), SET_TEMPLATE_PATH), LinkedHashSet.class);
+		addBuiltIn(new CollectionExceptionalParsing(Optional.class.getName(), OPTIONAL_TEMPLATE_PATH), null);
+		addBuiltIn(new CollectionExceptionalParsing(Map.class.getName(), MAP_TEMPLATE_PATH), LinkedHashMap.class);
 	}
 
-	private int checkType(Type type) {
-		Matcher matcher = Pattern.compile(CLASS_NAME_REGEX).matcher(type.getTypeName());
-		List<String> classNames = new ArrayList<>();
-		while (matcher.find()) {
-			classNames.add(matcher.group());
+	/**
+	 * @param copyType what the getter copies the field into when emitted as bytecode, like its template does;
+	 *                 null if the field is returned as it is
+	 */
+	private void addBuiltIn(ExceptionalParsing exceptionalParsing, Class<?> copyType) {
+		exceptionalParsings.add(exceptionalParsing);
+		builtInCopyTypes.put(exceptionalParsing, copyType == null ? null : copyType.getName());
+	}
+
+	/**
+	 * Registers another parsing, it is asked before the ones registered earlier and the built-in ones.
+	 */
+	public void addExceptionalParsing(ExceptionalParsing exceptionalParsing) {
+		exceptionalParsings.add(0, exceptionalParsing);
+		if (exceptionalParsing instanceof CollectionExceptionalParsing) {
+			((CollectionExceptionalParsing) exceptionalParsing).setImmutable(immutable);
+		}
+	}
+
+	/**
+	 * Number of DTOs rendered concurrently; values below 1 use one thread per available processor.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/**
+	 * Records the render time of each DTO and the time the sink takes for it.
+	 */
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	/**
+	 * Adds {@code from(Interface)} factories copying an instance of the interface with all nested instances of
+	 * interfaces DTOs are generated for.
+	 */
+	public void setGenerateCopyFactories(boolean generateCopyFactories) {
+		this.generateCopyFactories = generateCopyFactories;
+	}
+
+	/**
+	 * Stores lists of {@code Integer}, {@code Long} and {@code Double} as primitive arrays, declares the fields by
+	 * size and adds {@code equals} and {@code hashCode}, the latter cached if there are no setters.
+	 */
+	public void setCompactLayout(boolean compactLayout) {
+		this.compactLayout = compactLayout;
+		copyFactoryRenderer.setCompactLayout(compactLayout);
+	}
+
+	/**
+	 * Generates final fields, set by an all-args constructor or a builder, instead of setters. Collections and arrays
+	 * are copied by the constructor and only handed out unmodifiable, so the DTOs can be shared between threads.
+	 */
+	public void setImmutable(boolean immutable) {
+		this.immutable = immutable;
+		for (ExceptionalParsing exceptionalParsing : exceptionalParsings) {
+			if (exceptionalParsing instanceof CollectionExceptionalParsing) {
+				((CollectionExceptionalParsing) exceptionalParsing).setImmutable(immutable);
+			}
 		}
-		if (classNames.size() <= 1 || CollectionUtils.intersection(classNames, oldNameToNewName.keySet()).isEmpty()) {
+		copyFactoryRenderer.setImmutable(immutable);
+	}
+
+	/**
+	 * Adds a nested {@code Codec} to each DTO, writing it to a {@link java.io.DataOutput} and reading it from a
+	 * {@link java.io.DataInput} field by field, without reflection. DTOs with attributes neither the
+	 * {@link CodecRenderer} nor their parsing can serialize, and DTOs referencing those, get no codec.
+	 */
+	public void setGenerateCodecs(boolean generateCodecs) {
+		this.generateCodecs = generateCodecs;
+	}
+
+	private boolean hasSetters() {
+		return generateSetters && !immutable;
+	}
+
+	/**
+	 * Receives the warnings about interfaces and getters which are not supported, logged by default.
+	 */
+	public void setWarnings(Consumer<String> warnings) {
+		this.warnings = warnings;
+	}
+
+	private int checkType(Type type) {
+		if (isPlain(type) || !typeNameRewriter.references(type)) {
 			return PARSEABLE;
 		}
-		for (int i = 0; i < this.exceptionalParsings.length; i++) {
-			if (exceptionalParsings[i].canParse(type)) {
+		for (int i = 0; i < this.exceptionalParsings.size(); i++) {
+			if (exceptionalParsings.get(i).canParse(type, oldNameToNewName)) {
 				return i;
 			}
 		}
 		return NOT_PARSEABLE;
 	}
 
-	private String getNewTypeName(Type type) {
-		String typeName = type.getTypeName();
-		Pattern pattern = Pattern.compile(CLASS_NAME_REGEX);
-		Matcher matcher = pattern.matcher(typeName);
-		while (matcher.find()) {
-			String foundClass = matcher.group();
-			for (Map.Entry<String, String> entry : this.oldNameToNewName.entrySet()) {
-				if (entry.getKey().equals(foundClass)) {
-					String suffix = typeName.substring(matcher.end());
-					String prefix = typeName.substring(0, matcher.start());
-					typeName = prefix + entry.getValue() + suffix;
-					matcher = pattern.matcher(typeName);
-				}
-			}
+	private static boolean isPlain(Type type) {
+		if (type instanceof GenericArrayType) {
+			return isPlain(((GenericArrayType) type).getGenericComponentType());
 		}
-		return typeName;
+		return type instanceof Class || type instanceof MirroredTypes.Named;
 	}
 
-	private void collect(Class c) {
-		oldNameToNewName.put(c.getName(), c.getName() + suffix);
-		collectedInterfaces.add(c);
+	private String getNewTypeName(Type type) {
+		return typeNameRewriter.rewrite(type);
 	}
 
-	private void preCheck(Class c) throws UnsupportedInterfaceException {
+	private void preCheck(DtoInterface c) throws UnsupportedInterfaceException {
 		if (!c.isInterface()) {
 			throw new UnsupportedInterfaceException("Can only handle interfaces: " + c.toString());
 		}
-		if (!ArrayUtils.isEmpty(c.getTypeParameters())) {
+		if (c.hasTypeParameters()) {
 			throw new UnsupportedInterfaceException("Cannot handle typed interfaces: " + c.toString());
 		}
-		for (Method method : c.getMethods()) {
-			if (!ArrayUtils.isEmpty(method.getTypeParameters())) {
+		for (DtoMethod method : c.getMethods()) {
+			if (method.hasTypeParameters()) {
 				throw new UnsupportedInterfaceException(
 						"Cannot handle interfaces with typed methods: " + method.toString());
 			}
-			if (!Pattern.compile(GET_METHOD_REGEX).matcher(method.getName()).matches()) {
+			if (!GET_METHOD_PATTERN.matcher(method.getName()).matches()) {
 				throw new UnsupportedInterfaceException(
 						"Can only handle getter-interfaces, method not allowed: " + method.toString());
 			}
-			if (!ArrayUtils.isEmpty(method.getGenericParameterTypes())) {
+			if (method.getParameterCount() > 0) {
 				throw new UnsupportedInterfaceException(
 						"Can only handle getter-interfaces, method not allowed: " + method.toString());
 			}
@@ -119,30 +229,215 @@ public class DtoClassGenerator {
 		if (generated != null) {
 			return generated;
 		}
+		collectInterfaces();
+
+		if (threads <= 1 || collectedInterfaces.size() <= 1) {
+			generated = collectedInterfaces.stream().map(this::generateDto).collect(Collectors.toList());
+		} else {
+			// rendering only reads shared state, the collected list keeps the order of the interfaces
+			generated = execute(() -> collectedInterfaces.parallelStream().map(this::generateDto)
+					.collect(Collectors.toList()));
+		}
+		return generated;
+	}
 
-		for (Class i : interfaces) {
+	/**
+	 * Renders the DTOs one by one into a pooled buffer and hands them to the sink without keeping them. With more
+	 * than one thread, the sink is called concurrently.
+	 */
+	public void generate(DtoSink sink) throws IOException {
+		collectInterfaces();
 
+		Consumer<DtoInterface> renderToSink = c -> {
+			StringBuilder sb = BUFFERS.get();
+			sb.setLength(0);
+			render(c, sb);
+			try (Instrumentation.Stopwatch ignored = instrumentation.start("write")) {
+				sink.accept(c.getName() + suffix, sb);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+		try {
+			if (threads <= 1 || collectedInterfaces.size() <= 1) {
+				collectedInterfaces.forEach(renderToSink);
+			} else {
+				execute(() -> {
+					collectedInterfaces.parallelStream().forEach(renderToSink);
+					return null;
+				});
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Like {@link #generate(DtoSink)}, but emits the DTOs as class files. The getters of custom templates, the copy
+	 * factories, the compact layout, immutable DTOs and codecs cannot be emitted, DTOs using them are rendered to the
+	 * source sink instead.
+	 *
+	 * @return the number of DTOs rendered as source
+	 */
+	public int generateClassFiles(DtoClassFileSink classSink, DtoSink sourceSink) throws IOException {
+		collectInterfaces();
+
+		AtomicInteger rendered = new AtomicInteger();
+		Consumer<DtoInterface> emitToSink = c -> {
+			String name = c.getName() + suffix;
 			try {
-				preCheck(i);
-				collect(i);
+				byte[] classFile = emit(c);
+				if (classFile != null) {
+					try (Instrumentation.Stopwatch ignored = instrumentation.start("write")) {
+						classSink.accept(name, classFile);
+					}
+					return;
+				}
+				LOG.debug("{} cannot be emitted, writing it as source.", name);
+				rendered.incrementAndGet();
+				StringBuilder sb = BUFFERS.get();
+				sb.setLength(0);
+				render(c, sb);
+				try (Instrumentation.Stopwatch ignored = instrumentation.start("write")) {
+					sourceSink.accept(name, sb);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+		try {
+			if (threads <= 1 || collectedInterfaces.size() <= 1) {
+				collectedInterfaces.forEach(emitToSink);
+			} else {
+				execute(() -> {
+					collectedInterfaces.parallelStream().forEach(emitToSink);
+					return null;
+				});
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return rendered.get();
+	}
 
-			} catch (UnsupportedInterfaceException e) {
-				LOG.warn(e.getMessage());
+	/**
+	 * @return null if a getter needs a template other than the built-in ones, copy factories or codecs are
+	 * generated, the layout is compact or the DTOs are immutable
+	 */
+	private byte[] emit(DtoInterface c) {
+		if (generateCopyFactories || compactLayout || immutable || generateCodecs) {
+			return null;
+		}
+		List<DtoAttribute> attrs = preScan(c);
+		for (DtoAttribute attr : attrs) {
+			int i = checkType(attr.getReturnType());
+			if (i != PARSEABLE && !builtInCopyTypes.containsKey(exceptionalParsings.get(i))) {
+				return null;
 			}
+		}
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("emit:" + c.getName() + suffix)) {
+			return bytecodeEmitter.emit(c.getName() + suffix, c.getName(), attrs, attr -> {
+				int i = checkType(attr.getReturnType());
+				return i == PARSEABLE ? null : builtInCopyTypes.get(exceptionalParsings.get(i));
+			}, generateSetters);
+		} finally {
+			instrumentation.count("emit.dtos");
+		}
+	}
 
+	private void collectInterfaces() {
+		if (collected) {
+			return;
 		}
-		generated = collectedInterfaces.stream().map(this::generateDto).collect(Collectors.toList());
-		return generated;
+		Instrumentation.Stopwatch stopwatch = instrumentation.start("collect");
+		if (immutable && generateSetters) {
+			warnings.accept("Immutable DTOs get a builder instead of setters, the setters are not generated.");
+		}
+		// all names are known before the first check, so whether an interface is supported does not depend on the
+		// order of the interfaces; rejecting one can reject those referencing it
+		for (DtoInterface i : interfaces) {
+			oldNameToNewName.put(i.getName(), i.getName() + suffix);
+		}
+		List<DtoInterface> candidates = new LinkedList<>(interfaces);
+		boolean changed;
+		do {
+			changed = false;
+			for (Iterator<DtoInterface> it = candidates.iterator(); it.hasNext(); ) {
+				DtoInterface i = it.next();
+				try {
+					preCheck(i);
+				} catch (UnsupportedInterfaceException e) {
+					warnings.accept(e.getMessage());
+					oldNameToNewName.remove(i.getName());
+					it.remove();
+					changed = true;
+				}
+			}
+		} while (changed);
+		collectedInterfaces.addAll(candidates);
+		if (generateCodecs) {
+			collectCodecs();
+		}
+		collected = true;
+		stopwatch.close();
+		instrumentation.count("collect.interfaces", collectedInterfaces.size());
+		instrumentation.count("collect.unsupported", interfaces.size() - collectedInterfaces.size());
 	}
 
-	private void preScan(Class c) {
+	/**
+	 * Finds the DTOs getting a codec: those whose attributes can all be serialized, DTOs only if they get one.
+	 */
+	private void collectCodecs() {
+		codecs.clear();
+		for (DtoInterface c : collectedInterfaces) {
+			codecs.add(c.getName());
+		}
+		boolean changed;
+		do {
+			changed = false;
+			for (DtoInterface c : collectedInterfaces) {
+				if (!codecs.contains(c.getName())) {
+					continue;
+				}
+				String unsupported = renderCodec(c, new StringBuilder(), preScan(c), codecs::contains);
+				if (unsupported != null) {
+					codecs.remove(c.getName());
+					warnings.accept("No codec generated for " + c.getName() + suffix + ", cannot serialize \""
+							+ unsupported + "\".");
+					changed = true;
+				}
+			}
+		} while (changed);
+		instrumentation.count("collect.codecs", codecs.size());
+	}
 
-		Pattern pattern = Pattern.compile(GET_METHOD_REGEX);
-		attrs = new LinkedList<>();
-		for (Method method : c.getMethods()) {
-			Matcher matcher = pattern.matcher(method.getName());
-			if (!ArrayUtils.isEmpty(method.getExceptionTypes())) {
-				LOG.warn("Getter \"" + method.getName() + "\" throwing exception(s) which is not getter conform.");
+	private <T> T execute(Callable<T> task) {
+		ForkJoinPool pool = new ForkJoinPool(Math.min(threads, collectedInterfaces.size()));
+		try {
+			return pool.submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating DTOs.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Failed to generate DTOs.", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private List<DtoAttribute> preScan(DtoInterface c) {
+
+		List<DtoAttribute> attrs = new LinkedList<>();
+		// the order of getMethods() is unspecified, sorting keeps the generated sources stable between builds
+		List<DtoMethod> methods = c.getMethods();
+		methods.sort(Comparator.comparing(DtoMethod::getName));
+		for (DtoMethod method : methods) {
+			Matcher matcher = GET_METHOD_PATTERN.matcher(method.getName());
+			if (method.hasExceptionTypes()) {
+				warnings.accept("Getter \"" + method.getName() + "\" throwing exception(s) which is not getter conform.");
 			}
 			if (matcher.matches()) {
 				DtoAttribute attr = new DtoAttribute();
@@ -154,17 +449,32 @@ public class DtoClassGenerator {
 				throw new IllegalStateException("Pre check failed.");
 			}
 		}
+		return attrs;
 	}
 
-	private DtoClass generateDto(Class c) {
+	private DtoClass generateDto(DtoInterface c) {
 
 		DtoClass dtoClass = new DtoClass();
 		dtoClass.setName(c.getName() + suffix);
-		preScan(c);
-
 		StringBuilder sb = new StringBuilder();
+		render(c, sb);
+		dtoClass.setContent(sb.toString());
+		return dtoClass;
+	}
+
+	private void render(DtoInterface c, StringBuilder sb) {
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("render:" + c.getName() + suffix)) {
+			renderUntimed(c, sb);
+		}
+		instrumentation.count("render.dtos");
+	}
+
+	private void renderUntimed(DtoInterface c, StringBuilder sb) {
+
+		List<DtoAttribute> attrs = preScan(c);
+
 		sb.append("package ");
-		sb.append(c.getPackage().getName());
+		sb.append(c.getPackageName());
 		sb.append(SEMI_COLON_NEW_LINE);
 		sb.append(NEW_LINE);
 		sb.append("public class ");
@@ -175,58 +485,233 @@ public class DtoClassGenerator {
 		sb.append(SPACE_OPEN_CURLY_BRACE_NEW_LINE);
 		sb.append(NEW_LINE);
 
-		for (DtoAttribute attr : this.attrs) {
+		String dto = c.getSimpleName() + suffix;
+		if (compactLayout) {
+			renderCompact(c, sb, attrs);
+		} else {
+			for (DtoAttribute attr : attrs) {
+				renderField(sb, attr, getNewTypeName(attr.getReturnType()));
+				sb.append(NEW_LINE);
+				renderAccessors(sb, attr);
+			}
+		}
+
+		if (immutable) {
+			sb.append(NEW_LINE);
+			immutableRenderer.renderConstructor(sb, dto, attrs, this::getCopyType, compactLayout, compactLayout,
+					warnings);
+		}
+
+		if (generateCopyFactories) {
+			sb.append(NEW_LINE);
+			copyFactoryRenderer.render(sb, c, dto, attrs, warnings);
+		}
+
+		if (immutable) {
+			sb.append(NEW_LINE);
+			immutableRenderer.renderBuilder(sb, dto, attrs);
+		}
+
+		if (generateCodecs && codecs.contains(c.getName())) {
+			sb.append(NEW_LINE);
+			renderCodec(c, sb, attrs, codecs::contains);
+		}
+
+		if (compactLayout) {
+			compactLayoutRenderer.renderViews(sb, CompactLayoutRenderer.getPrimitiveLists(attrs));
+		}
+
+		sb.append(NEW_LINE);
+		sb.append(CLOSE_CURLY_BRACE_NEW_LINE);
+	}
+
+	/**
+	 * Fields are written in the order of the attributes and read back into the DTO, or into the builder of an
+	 * immutable one.
+	 *
+	 * @return the name of the first attribute which cannot be serialized, null if the codec is complete
+	 */
+	private String renderCodec(DtoInterface c, StringBuilder sb, List<DtoAttribute> attrs,
+			Predicate<String> hasCodec) {
+		String dto = c.getSimpleName() + suffix;
+		String indent = "\t\t\t";
+		CodecRenderer codec = new CodecRenderer(oldNameToNewName, hasCodec);
+		sb.append("\tpublic static final class Codec {\n\n");
+		sb.append("\t\tprivate Codec() {\n");
+		sb.append("\t\t}\n\n");
+
+		sb.append("\t\tpublic static void write(").append(dto)
+				.append(" dto, java.io.DataOutput out) throws java.io.IOException {\n");
+		sb.append(indent).append("out.writeBoolean(dto != null);\n");
+		sb.append(indent).append("if (dto == null) {\n");
+		sb.append(indent).append("\treturn;\n");
+		sb.append(indent).append("}\n");
+		for (DtoAttribute attr : attrs) {
+			CompactLayoutRenderer.PrimitiveList primitiveList = compactLayout
+					? CompactLayoutRenderer.PrimitiveList.of(attr.getReturnType())
+					: null;
+			boolean written;
+			if (primitiveList != null) {
+				written = codec.appendWrite(sb, indent, primitiveList.getArrayType(), "dto." + attr.getName());
+			} else {
+				int i = checkType(attr.getReturnType());
+				written = i == PARSEABLE
+						? codec.appendWrite(sb, indent, attr.getReturnType(), "dto." + attr.getName())
+						: exceptionalParsings.get(i).appendCodecWrite(codec, sb, indent, attr, "dto." + attr.getName());
+			}
+			if (!written) {
+				return attr.getName();
+			}
+		}
+		sb.append("\t\t}\n\n");
+
+		sb.append("\t\tpublic static ").append(dto)
+				.append(" read(java.io.DataInput in) throws java.io.IOException {\n");
+		sb.append(indent).append("if (!in.readBoolean()) {\n");
+		sb.append(indent).append("\treturn null;\n");
+		sb.append(indent).append("}\n");
+		String target;
+		if (immutable) {
+			target = "builder.";
+			sb.append(indent).append(ImmutableRenderer.BUILDER).append(" builder = builder();\n");
+		} else {
+			target = "dto.";
+			sb.append(indent).append(dto).append(" dto = new ").append(dto).append("();\n");
+		}
+		for (DtoAttribute attr : attrs) {
+			CompactLayoutRenderer.PrimitiveList primitiveList = compactLayout
+					? CompactLayoutRenderer.PrimitiveList.of(attr.getReturnType())
+					: null;
+			boolean read;
+			if (primitiveList != null && immutable) {
+				// the builder takes a list, a view on the array read saves boxing every element
+				String array = "compact" + attr.getMethodName();
+				sb.append(indent).append(primitiveList.getArrayType().getSimpleName()).append(' ').append(array)
+						.append(";\n");
+				read = codec.appendRead(sb, indent, primitiveList.getArrayType(), array);
+				sb.append(indent).append(target).append(attr.getName()).append(" = ").append(array)
+						.append(" == null ? null : new ").append(primitiveList.getView()).append('(').append(array)
+						.append(");\n");
+			} else if (primitiveList != null) {
+				read = codec.appendRead(sb, indent, primitiveList.getArrayType(), target + attr.getName());
+			} else {
+				int i = checkType(attr.getReturnType());
+				read = i == PARSEABLE
+						? codec.appendRead(sb, indent, attr.getReturnType(), target + attr.getName())
+						: exceptionalParsings.get(i).appendCodecRead(codec, sb, indent, attr, target + attr.getName());
+			}
+			if (!read) {
+				return attr.getName();
+			}
+		}
+		sb.append(indent).append(immutable ? "return builder.build();\n" : "return dto;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t}\n");
+		return null;
+	}
+
+	/**
+	 * @return what the constructor of an immutable DTO copies an attribute rendered by a built-in template into
+	 */
+	private String getCopyType(DtoAttribute attr) {
+		int i = checkType(attr.getReturnType());
+		return i == PARSEABLE ? null : builtInCopyTypes.get(exceptionalParsings.get(i));
+	}
 
-			sb.append("\tprivate ");
+	private void renderCompact(DtoInterface c, StringBuilder sb, List<DtoAttribute> attrs) {
+		for (DtoAttribute attr : compactLayoutRenderer.orderFields(attrs)) {
+			renderField(sb, attr, compactLayoutRenderer.getFieldType(attr));
+		}
+		CompactLayoutRenderer.HashCaching caching = immutable
+				? CompactLayoutRenderer.HashCaching.EAGER
+				: CompactLayoutRenderer.HashCaching.NONE;
+		if (caching != CompactLayoutRenderer.HashCaching.NONE) {
+			sb.append("\tprivate final int ");
+			sb.append(CompactLayoutRenderer.CACHED_HASH_CODE);
+			sb.append(SEMI_COLON_NEW_LINE);
+		}
+		sb.append(NEW_LINE);
+
+		for (DtoAttribute attr : attrs) {
+			CompactLayoutRenderer.PrimitiveList primitiveList = CompactLayoutRenderer.PrimitiveList.of(
+					attr.getReturnType());
+			if (primitiveList == null) {
+				renderAccessors(sb, attr);
+				continue;
+			}
+			if (hasSetters()) {
+				compactLayoutRenderer.renderSetter(sb, attr, primitiveList);
+			}
+			compactLayoutRenderer.renderGetter(sb, attr, primitiveList);
+		}
+
+		if (compactLayoutRenderer.hasEquals(attrs, immutable)) {
+			compactLayoutRenderer.renderEqualsAndHashCode(sb, c.getSimpleName() + suffix, attrs, caching);
+		}
+	}
+
+	private void renderField(StringBuilder sb, DtoAttribute attr, String fieldType) {
+		sb.append(immutable ? "\tprivate final " : "\tprivate ");
+		sb.append(fieldType);
+		sb.append(SPACE);
+		sb.append(attr.getName());
+		sb.append(SEMI_COLON_NEW_LINE);
+	}
+
+	private void renderAccessors(StringBuilder sb, DtoAttribute attr) {
+		if (hasSetters()) {
+			sb.append("\tpublic void set");
+			sb.append(attr.getMethodName());
+			sb.append(OPEN_PARENTHESIS);
 			sb.append(getNewTypeName(attr.getReturnType()));
 			sb.append(SPACE);
 			sb.append(attr.getName());
+			sb.append(CLOSE_PARENTHESIS);
+			sb.append(SPACE_OPEN_CURLY_BRACE_NEW_LINE);
+			sb.append("\t\tthis.");
+			sb.append(attr.getName());
+			sb.append(" = ");
+			sb.append(attr.getName());
 			sb.append(SEMI_COLON_NEW_LINE);
+			sb.append("\t");
+			sb.append(CLOSE_CURLY_BRACE_NEW_LINE);
 			sb.append(NEW_LINE);
+		}
 
-			if (generateSetters) {
-				sb.append("\tpublic void set");
-				sb.append(attr.getMethodName());
-				sb.append(OPEN_PARENTHESIS);
+		int i = checkType(attr.getReturnType());
+		if (i == PARSEABLE) {
+			sb.append("\tpublic ");
+			sb.append(TypeNameRewriter.toSourceName(attr.getReturnType()));
+			sb.append(" get");
+			sb.append(attr.getMethodName());
+			sb.append(OPEN_PARENTHESIS);
+			sb.append(CLOSE_PARENTHESIS);
+			sb.append(SPACE_OPEN_CURLY_BRACE_NEW_LINE);
+			Type componentType = DeepCopyRenderer.getComponentType(attr.getReturnType());
+			if (immutable && componentType != null && DeepCopyRenderer.needsCopy(componentType)) {
+				// the caller gets its own copy of every nested array and collection
+				sb.append("\t\t");
 				sb.append(getNewTypeName(attr.getReturnType()));
-				sb.append(SPACE);
-				sb.append(attr.getName());
-				sb.append(CLOSE_PARENTHESIS);
-				sb.append(SPACE_OPEN_CURLY_BRACE_NEW_LINE);
-				sb.append("\t\tthis.");
-				sb.append(attr.getName());
-				sb.append(" = ");
-				sb.append(attr.getName());
-				sb.append(SEMI_COLON_NEW_LINE);
-				sb.append("\t");
-				sb.append(CLOSE_CURLY_BRACE_NEW_LINE);
-				sb.append(NEW_LINE);
-			}
-
-			int i = checkType(attr.getReturnType());
-			if (i == PARSEABLE) {
-				sb.append("\tpublic ");
-				sb.append(attr.getReturnType().getTypeName());
-				sb.append(" get");
-				sb.append(attr.getMethodName());
-				sb.append(OPEN_PARENTHESIS);
-				sb.append(CLOSE_PARENTHESIS);
-				sb.append(SPACE_OPEN_CURLY_BRACE_NEW_LINE);
+				sb.append(" copy;\n");
+				new DeepCopyRenderer(typeNameRewriter, false).appendCopy(sb, "\t\t", attr.getReturnType(),
+						"this." + attr.getName(), "copy");
+				sb.append("\t\treturn copy");
+			} else {
 				sb.append("\t\treturn this.");
 				sb.append(attr.getName());
-				sb.append(SEMI_COLON_NEW_LINE);
-				sb.append("\t");
-				sb.append(CLOSE_CURLY_BRACE_NEW_LINE);
-				sb.append(NEW_LINE);
-
-			} else {
-				this.exceptionalParsings[i].parse(sb, attr, this.oldNameToNewName);
+				if (immutable && componentType != null) {
+					sb.append(" == null ? null : this.");
+					sb.append(attr.getName());
+					sb.append(".clone()");
+				}
 			}
-		}
+			sb.append(SEMI_COLON_NEW_LINE);
+			sb.append("\t");
+			sb.append(CLOSE_CURLY_BRACE_NEW_LINE);
+			sb.append(NEW_LINE);
 
-		sb.append(NEW_LINE);
-		sb.append(CLOSE_CURLY_BRACE_NEW_LINE);
-		dtoClass.setContent(sb.toString());
-		return dtoClass;
+		} else {
+			this.exceptionalParsings.get(i).parse(sb, attr, this.oldNameToNewName);
+		}
 	}
 }
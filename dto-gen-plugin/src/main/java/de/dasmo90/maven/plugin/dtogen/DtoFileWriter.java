@@ -0,0 +1,144 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import de.dasmo90.maven.plugin.base.FingerprintIndex;
+import de.dasmo90.maven.plugin.base.Fingerprints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes each DTO as UTF-8 source file or as class file below the given directory. Thread safe, encoder and byte
+ * buffer are pooled per thread.
+ */
+public class DtoFileWriter implements DtoSink, DtoClassFileSink {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DtoFileWriter.class);
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private static final String SOURCE_EXTENSION = ".java";
+
+	private final File directory;
+	private final String extension;
+	private final FingerprintIndex index;
+	private final ThreadLocal<CharsetEncoder> encoders = ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+	private final ThreadLocal<ByteBuffer> buffers =
+			ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+	private final AtomicInteger written = new AtomicInteger();
+	private final AtomicInteger unchanged = new AtomicInteger();
+
+	/**
+	 * @param index if not null, files whose fingerprint did not change since the last build are not touched
+	 */
+	public DtoFileWriter(File directory, FingerprintIndex index) {
+		this(directory, index, SOURCE_EXTENSION);
+	}
+
+	/**
+	 * @param extension of the written files, {@code .class} if this writer gets class files
+	 */
+	public DtoFileWriter(File directory, FingerprintIndex index, String extension) {
+		this.directory = directory;
+		this.index = index;
+		this.extension = extension;
+	}
+
+	@Override
+	public void accept(String name, CharSequence content) throws IOException {
+		write(name, encode(content));
+	}
+
+	@Override
+	public void accept(String name, byte[] classFile) throws IOException {
+		write(name, ByteBuffer.wrap(classFile));
+	}
+
+	private void write(String name, ByteBuffer bytes) throws IOException {
+		Path targetFile = getTargetFile(name);
+		if (index != null) {
+			MessageDigest digest = Fingerprints.newDigest();
+			digest.update(bytes.duplicate());
+			String fingerprint = Fingerprints.toHex(digest.digest());
+			index.put(name, fingerprint);
+			if (index.isUnchanged(name, fingerprint) && Files.isRegularFile(targetFile)) {
+				unchanged.incrementAndGet();
+				return;
+			}
+		}
+		Files.createDirectories(targetFile.getParent());
+		try (FileChannel channel = FileChannel.open(targetFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		}
+		written.incrementAndGet();
+	}
+
+	/**
+	 * Deletes the files of DTOs which were not generated again and stores the fingerprints.
+	 */
+	public void finish() throws IOException {
+		if (index != null) {
+			for (String removed : index.removed()) {
+				Path targetFile = getTargetFile(removed);
+				if (Files.deleteIfExists(targetFile)) {
+					LOG.debug("Deleted {}", targetFile);
+				}
+			}
+			index.save();
+		}
+		LOG.info("{} generated {} files written, {} unchanged.", written.get(), extension, unchanged.get());
+	}
+
+	public int getWritten() {
+		return written.get();
+	}
+
+	public int getUnchanged() {
+		return unchanged.get();
+	}
+
+	private Path getTargetFile(String className) {
+		return new File(directory, className.replace('.', '/') + extension).toPath();
+	}
+
+	private ByteBuffer encode(CharSequence content) throws IOException {
+		CharsetEncoder encoder = encoders.get().reset();
+		CharBuffer in = CharBuffer.wrap(content);
+		ByteBuffer out = buffers.get();
+		out.clear();
+		while (true) {
+			CoderResult result = encoder.encode(in, out, true);
+			if (result.isUnderflow()) {
+				result = encoder.flush(out);
+			}
+			if (result.isUnderflow()) {
+				break;
+			}
+			if (!result.isOverflow()) {
+				result.throwException();
+			}
+			ByteBuffer larger = ByteBuffer.allocate(out.capacity() * 2);
+			out.flip();
+			larger.put(out);
+			out = larger;
+			buffers.set(out);
+		}
+		out.flip();
+		return out;
+	}
+}
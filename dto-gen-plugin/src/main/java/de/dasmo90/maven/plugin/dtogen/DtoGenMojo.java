@@ -1,6 +1,13 @@
 package de.dasmo90.maven.plugin.dtogen;
 
+import de.dasmo90.maven.plugin.base.ClassLoaderMetrics;
+import de.dasmo90.maven.plugin.base.ClassMetadata;
+import de.dasmo90.maven.plugin.base.ClasspathCache;
+import de.dasmo90.maven.plugin.base.FingerprintIndex;
+import de.dasmo90.maven.plugin.base.Instrumentation;
 import de.dasmo90.maven.plugin.base.MavenPluginClassLoader;
+import de.dasmo90.maven.plugin.base.SessionScope;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -12,9 +19,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 @Mojo(
@@ -28,11 +36,26 @@ public final class DtoGenMojo extends AbstractMojo {
 
 	private static final String TARGET_GENERATED_SOURCES = "target/generated-sources/";
 
-	private static final String SUFFIX_REGEX = "[A-Z][A-Za-z].*";
+	private static final String SCAN_INDEX = "target/dasmo90/dto-gen.scan-index";
+
+	private static final String GENERATED_INDEX = "target/dasmo90/dto-gen.generated";
+
+	private static final String TARGET_CLASSES = "target/classes/";
+
+	private static final String GENERATED_CLASSES_INDEX = "target/dasmo90/dto-gen.generated-classes";
+
+	private static final String IDE_SOURCES = "target/dasmo90/dto-gen-sources/";
+
+	private static final String IDE_SOURCES_INDEX = "target/dasmo90/dto-gen.generated-ide-sources";
+
+	private static final String REPORT = "target/dasmo90/generate-dtos-report.json";
 
 	@Parameter(defaultValue = "${project}", readonly = true)
 	private MavenProject project;
 
+	@Parameter(defaultValue = "${session}", readonly = true)
+	private MavenSession session;
+
 	@Parameter(readonly = true, required = true)
 	private List<String> packagePrefixes;
 
@@ -42,55 +65,217 @@ public final class DtoGenMojo extends AbstractMojo {
 	@Parameter(defaultValue = "false", readonly = true)
 	private boolean generateSetters;
 
+	/**
+	 * Adds {@code from(Interface)} factories deep copying instances of the interfaces, cycles included. Arrays, lists,
+	 * sets, maps and optionals are copied at every level, other values like dates are shared with the source.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean generateCopyFactories;
+
+	/**
+	 * Stores lists of Integer, Long and Double as primitive arrays, declares the fields by size and adds equals and
+	 * hashCode, cached by immutable DTOs. Mutable DTOs referencing other DTOs get no equals and hashCode, as their
+	 * graphs may be cyclic.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean compactLayout;
+
+	/**
+	 * Generates final fields, an all-args constructor and a builder instead of setters; arrays and collections are
+	 * copied at every level of nesting and only handed out unmodifiable or cloned. Values of other types, like dates,
+	 * are shared.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean immutable;
+
+	/**
+	 * Adds a nested Codec to each DTO, writing it to a DataOutput and reading it from a DataInput without reflection.
+	 */
+	@Parameter(defaultValue = "false", readonly = true)
+	private boolean generateCodecs;
+
+	@Parameter(defaultValue = "true", readonly = true)
+	private boolean incremental;
+
+	@Parameter(defaultValue = "1", readonly = true)
+	private int generateThreads;
+
+	/**
+	 * Additional getter templates by raw type name, e.g. {@code <java.util.Deque>templates/Deque.vm</java.util.Deque>}.
+	 * Templates are loaded from the plugin classpath.
+	 */
+	@Parameter(readonly = true)
+	private Map<String, String> collectionTemplates;
+
+	@Parameter(defaultValue = "true", property = "dasmo90.scanIndex", readonly = true)
+	private boolean scanIndex;
+
+	@Parameter(defaultValue = "0", property = "dasmo90.scanThreads", readonly = true)
+	private int scanThreads;
+
+	/**
+	 * Writes timings and counts of the execution to {@value #REPORT}.
+	 */
+	@Parameter(defaultValue = "true", property = "dasmo90.report", readonly = true)
+	private boolean report;
+
+	/**
+	 * SOURCES, CLASSES to write the class files to target/classes without compiling them, or BOTH to get the sources
+	 * in {@value #IDE_SOURCES} as well. Those sources are not compiled.
+	 */
+	@Parameter(defaultValue = "SOURCES", property = "dasmo90.outputMode", readonly = true)
+	private OutputMode outputMode;
+
 	private List<Class<?>> interfaces;
-	private List<DtoClass> generated;
 
-	private void generate() throws Exception {
-		generated = new DtoClassGenerator(suffix, interfaces, generateSetters).generate();
+	private Instrumentation instrumentation = Instrumentation.NONE;
+
+	/**
+	 * @return whether generated sources have to be compiled
+	 */
+	private boolean generate() throws Exception {
+		DtoClassGenerator generator = new DtoClassGenerator(suffix, interfaces, generateSetters);
+		generator.setThreads(generateThreads);
+		generator.setInstrumentation(instrumentation);
+		generator.setGenerateCopyFactories(generateCopyFactories);
+		generator.setCompactLayout(compactLayout);
+		generator.setImmutable(immutable);
+		generator.setGenerateCodecs(generateCodecs);
+		if (collectionTemplates != null) {
+			for (Map.Entry<String, String> template : collectionTemplates.entrySet()) {
+				generator.addExceptionalParsing(new CollectionExceptionalParsing(template.getKey(), template.getValue()));
+			}
+		}
+		FingerprintIndex index = loadIndex(GENERATED_INDEX);
+		DtoFileWriter writer = new DtoFileWriter(new File(this.project.getBasedir(), TARGET_GENERATED_SOURCES), index);
+		if (outputMode == OutputMode.SOURCES) {
+			try (Instrumentation.Stopwatch ignored = instrumentation.start("generate")) {
+				generator.generate(writer);
+				writer.finish();
+			}
+			count("write", writer);
+			return true;
+		}
+
+		FingerprintIndex classesIndex = loadIndex(GENERATED_CLASSES_INDEX);
+		DtoFileWriter classWriter = new DtoFileWriter(new File(this.project.getBasedir(), TARGET_CLASSES),
+				classesIndex, ".class");
+		int rendered;
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("generate")) {
+			rendered = generator.generateClassFiles(classWriter, writer);
+			classWriter.finish();
+			writer.finish();
+		}
+		count("write", writer);
+		count("write.classes", classWriter);
+		if (outputMode == OutputMode.BOTH) {
+			FingerprintIndex ideIndex = loadIndex(IDE_SOURCES_INDEX);
+			DtoFileWriter ideWriter = new DtoFileWriter(new File(this.project.getBasedir(), IDE_SOURCES), ideIndex);
+			try (Instrumentation.Stopwatch ignored = instrumentation.start("generate.ideSources")) {
+				generator.generate(ideWriter);
+				ideWriter.finish();
+			}
+		}
+		return rendered > 0;
+	}
+
+	/**
+	 * @return null if not incremental, the index is deleted then as the files it describes are about to change
+	 */
+	private FingerprintIndex loadIndex(String path) throws IOException {
+		File file = new File(this.project.getBasedir(), path);
+		if (incremental) {
+			return FingerprintIndex.load(file);
+		}
+		Files.deleteIfExists(file.toPath());
+		return null;
+	}
+
+	private void count(String name, DtoFileWriter writer) {
+		instrumentation.count(name + ".written", writer.getWritten());
+		instrumentation.count(name + ".unchanged", writer.getUnchanged());
 	}
 
 	public void execute() throws MojoExecutionException {
+		if (report) {
+			instrumentation = new Instrumentation();
+			instrumentation.setAttribute("goal", "generate-dtos");
+			instrumentation.setAttribute("project", project.getId());
+		}
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("execute")) {
+			generateDtos();
+		} finally {
+			writeReport();
+		}
+	}
 
-		if (!Pattern.compile(SUFFIX_REGEX).matcher(suffix).matches()) {
-			throw new MojoExecutionException("Suffix has to follow the pattern: " + SUFFIX_REGEX);
+	private void generateDtos() throws MojoExecutionException {
+
+		if (!Pattern.compile(DtoClassGenerator.SUFFIX_REGEX).matcher(suffix).matches()) {
+			throw new MojoExecutionException("Suffix has to follow the pattern: " + DtoClassGenerator.SUFFIX_REGEX);
 		}
 
+		final MavenPluginClassLoader projectClassLoader;
 		try {
-			interfaces = new MavenPluginClassLoader(project)
-					.loadClasses(Class::isInterface,
-							packagePrefixes.toArray(new String[packagePrefixes.size()]));
-
+			projectClassLoader = new MavenPluginClassLoader(project, project.getClassRealm(),
+					SessionScope.of(session).get(ClasspathCache.class, ClasspathCache::new));
 		} catch (Exception e) {
 			throw new MojoExecutionException("Failed to load interfaces from classpath.", e);
 		}
-
+		boolean compileSources;
+		// the interfaces are inspected during generation, so the loader is closed afterwards
 		try {
-			generate();
-		} catch (Exception e) {
-			throw new MojoExecutionException("Failed to generate classes.", e);
+			try {
+				if (scanIndex) {
+					projectClassLoader.setScanIndexFile(new File(this.project.getBasedir(), SCAN_INDEX));
+				}
+				projectClassLoader.setScanThreads(scanThreads);
+				projectClassLoader.setInstrumentation(instrumentation);
+				interfaces = projectClassLoader
+						.scanClasses(ClassMetadata::isInterface,
+								packagePrefixes.toArray(new String[packagePrefixes.size()]));
+
+			} catch (Exception e) {
+				throw new MojoExecutionException("Failed to load interfaces from classpath.", e);
+			}
+
+			try {
+				compileSources = generate();
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to write generated classes.", e);
+			} catch (Exception e) {
+				throw new MojoExecutionException("Failed to generate classes.", e);
+			}
+		} finally {
+			close(projectClassLoader);
 		}
 
-		try {
-			write();
-		} catch (Exception e) {
-			throw new MojoExecutionException("Failed to write generated classes.", e);
+		if (compileSources) {
+			this.project.addCompileSourceRoot(TARGET_GENERATED_SOURCES);
 		}
+	}
 
-		this.project.addCompileSourceRoot(TARGET_GENERATED_SOURCES);
+	private void close(MavenPluginClassLoader projectClassLoader) {
+		try {
+			projectClassLoader.close();
+		} catch (IOException e) {
+			LOG.warn("Failed to close class loader: {}", e.getMessage());
+		}
+		LOG.info("Project: {}", projectClassLoader.getMetrics());
+		LOG.info("All modules: {}", ClassLoaderMetrics.global());
+		instrumentation.count("classLoader", projectClassLoader.getMetrics());
 	}
 
-	private void write() throws IOException {
-		for (DtoClass dtoClass : this.generated) {
-			File target = this.project.getBasedir();
-			File targetFile = new File(target, TARGET_GENERATED_SOURCES
-					+ dtoClass.getName().replaceAll(Pattern.quote("."), "/") + ".java");
-			File parent = targetFile.getParentFile();
-			if (!parent.exists() && !parent.mkdirs()) {
-				throw new IllegalStateException("Couldn't create dir: " + parent);
-			}
-			try (FileWriter fileWriter = new FileWriter(targetFile)) {
-				fileWriter.write(dtoClass.getContent());
-			}
+	private void writeReport() {
+		if (!report) {
+			return;
+		}
+		File file = new File(this.project.getBasedir(), REPORT);
+		try {
+			instrumentation.writeReport(file);
+			LOG.debug("Report written to {}", file);
+		} catch (IOException e) {
+			LOG.warn("Failed to write report \"{}\": {}", file, e.getMessage());
 		}
 	}
 
@@ -0,0 +1,162 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the DTOs while the interfaces are compiled, by the rules of {@link DtoClassGenerator} applied to the
+ * compiler's model, so neither a class loader nor a second compilation is needed. Only interfaces of the compiled
+ * sources are considered, not those of dependencies.
+ * <p>
+ * Options, passed as {@code -A<option>=<value>}:
+ * <ul>
+ * <li>{@value #PACKAGE_PREFIXES}: comma separated, without it the processor does nothing</li>
+ * <li>{@value #SUFFIX}: defaults to {@code Dto}</li>
+ * <li>{@value #GENERATE_SETTERS}: defaults to {@code false}</li>
+ * <li>{@value #GENERATE_COPY_FACTORIES}: defaults to {@code false}</li>
+ * <li>{@value #COMPACT_LAYOUT}: defaults to {@code false}</li>
+ * <li>{@value #IMMUTABLE}: defaults to {@code false}</li>
+ * <li>{@value #GENERATE_CODECS}: defaults to {@code false}</li>
+ * <li>{@value #COLLECTION_TEMPLATES}: comma separated {@code rawType=templatePath} pairs</li>
+ * </ul>
+ */
+@SupportedOptions({
+		DtoGenProcessor.PACKAGE_PREFIXES,
+		DtoGenProcessor.SUFFIX,
+		DtoGenProcessor.GENERATE_SETTERS,
+		DtoGenProcessor.GENERATE_COPY_FACTORIES,
+		DtoGenProcessor.COMPACT_LAYOUT,
+		DtoGenProcessor.IMMUTABLE,
+		DtoGenProcessor.GENERATE_CODECS,
+		DtoGenProcessor.COLLECTION_TEMPLATES
+})
+public class DtoGenProcessor extends AbstractProcessor {
+
+	public static final String PACKAGE_PREFIXES = "dtogen.packagePrefixes";
+	public static final String SUFFIX = "dtogen.suffix";
+	public static final String GENERATE_SETTERS = "dtogen.generateSetters";
+	public static final String GENERATE_COPY_FACTORIES = "dtogen.generateCopyFactories";
+	public static final String COMPACT_LAYOUT = "dtogen.compactLayout";
+	public static final String IMMUTABLE = "dtogen.immutable";
+	public static final String GENERATE_CODECS = "dtogen.generateCodecs";
+	public static final String COLLECTION_TEMPLATES = "dtogen.collectionTemplates";
+
+	private static final String DEFAULT_SUFFIX = "Dto";
+
+	private final Set<String> generated = new HashSet<>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		// the interfaces are found by package, not by annotation
+		return Collections.singleton("*");
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		List<String> prefixes = getList(PACKAGE_PREFIXES);
+		if (prefixes.isEmpty() || roundEnv.processingOver()) {
+			return false;
+		}
+		String suffix = processingEnv.getOptions().getOrDefault(SUFFIX, DEFAULT_SUFFIX);
+		if (!Pattern.compile(DtoClassGenerator.SUFFIX_REGEX).matcher(suffix).matches()) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Suffix has to follow the pattern: " + DtoClassGenerator.SUFFIX_REGEX);
+			return false;
+		}
+
+		// sorted, the generated DTOs do not depend on the order of the root elements
+		Map<String, ElementInterface> interfaces = new TreeMap<>();
+		for (Element element : roundEnv.getRootElements()) {
+			collect(element, prefixes, interfaces);
+		}
+		if (interfaces.isEmpty()) {
+			return false;
+		}
+
+		Thread thread = Thread.currentThread();
+		ClassLoader contextClassLoader = thread.getContextClassLoader();
+		// Velocity looks for its templates with the context class loader first
+		thread.setContextClassLoader(getClass().getClassLoader());
+		try {
+			generate(suffix, interfaces);
+		} catch (Exception e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate DTOs: " + e);
+		} finally {
+			thread.setContextClassLoader(contextClassLoader);
+		}
+		return false;
+	}
+
+	private void generate(String suffix, Map<String, ElementInterface> interfaces) throws Exception {
+		Messager messager = processingEnv.getMessager();
+		DtoClassGenerator generator = new DtoClassGenerator(suffix,
+				Boolean.parseBoolean(processingEnv.getOptions().get(GENERATE_SETTERS)),
+				new ArrayList<>(interfaces.values()));
+		for (String template : getList(COLLECTION_TEMPLATES)) {
+			String[] parts = template.split("=", 2);
+			if (parts.length != 2) {
+				messager.printMessage(Diagnostic.Kind.ERROR, "Expected rawType=templatePath: " + template);
+				return;
+			}
+			generator.addExceptionalParsing(new CollectionExceptionalParsing(parts[0].trim(), parts[1].trim()));
+		}
+		generator.setGenerateCopyFactories(Boolean.parseBoolean(processingEnv.getOptions().get(GENERATE_COPY_FACTORIES)));
+		generator.setCompactLayout(Boolean.parseBoolean(processingEnv.getOptions().get(COMPACT_LAYOUT)));
+		generator.setImmutable(Boolean.parseBoolean(processingEnv.getOptions().get(IMMUTABLE)));
+		generator.setGenerateCodecs(Boolean.parseBoolean(processingEnv.getOptions().get(GENERATE_CODECS)));
+		generator.setWarnings(warning -> messager.printMessage(Diagnostic.Kind.WARNING, warning));
+		generator.generate((name, content) -> {
+			ElementInterface origin = interfaces.get(name.substring(0, name.length() - suffix.length()));
+			try (Writer writer = processingEnv.getFiler().createSourceFile(name, origin.getElement()).openWriter()) {
+				writer.append(content);
+			}
+		});
+	}
+
+	/**
+	 * Only top level interfaces, the DTO of a nested one would not compile.
+	 */
+	private void collect(Element element, List<String> prefixes, Map<String, ElementInterface> interfaces) {
+		if (element.getKind() != ElementKind.INTERFACE) {
+			return;
+		}
+		ElementInterface candidate = new ElementInterface((TypeElement) element, processingEnv.getElementUtils());
+		String name = candidate.getName();
+		if (prefixes.stream().anyMatch(name::startsWith) && generated.add(name)) {
+			interfaces.put(name, candidate);
+		}
+	}
+
+	private List<String> getList(String option) {
+		String value = processingEnv.getOptions().get(option);
+		if (value == null || value.trim().isEmpty()) {
+			return Collections.emptyList();
+		}
+		return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,28 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.util.List;
+
+/**
+ * An interface DTOs get generated for, as far as the generator needs to know it. Backed by a loaded class or by the
+ * compiler's model of a source file.
+ */
+interface DtoInterface {
+
+	/**
+	 * The binary name, like {@link Class#getName()}.
+	 */
+	String getName();
+
+	String getPackageName();
+
+	String getSimpleName();
+
+	boolean isInterface();
+
+	boolean hasTypeParameters();
+
+	/**
+	 * All public methods, including the inherited ones, in no particular order.
+	 */
+	List<DtoMethod> getMethods();
+}
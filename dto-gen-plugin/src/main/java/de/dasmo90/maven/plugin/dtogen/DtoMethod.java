@@ -0,0 +1,19 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.Type;
+
+/**
+ * A method of a {@link DtoInterface}.
+ */
+interface DtoMethod {
+
+	String getName();
+
+	boolean hasTypeParameters();
+
+	int getParameterCount();
+
+	boolean hasExceptionTypes();
+
+	Type getGenericReturnType();
+}
@@ -0,0 +1,11 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.io.IOException;
+
+public interface DtoSink {
+
+	/**
+	 * The content is only valid during the call, its buffer gets reused for the next DTO.
+	 */
+	void accept(String name, CharSequence content) throws IOException;
+}
@@ -0,0 +1,119 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DtoInterface} of a type the compiler is working on, the class does not need to exist yet.
+ */
+class ElementInterface implements DtoInterface {
+
+	private final TypeElement element;
+	private final Elements elements;
+
+	ElementInterface(TypeElement element, Elements elements) {
+		this.element = element;
+		this.elements = elements;
+	}
+
+	TypeElement getElement() {
+		return element;
+	}
+
+	@Override
+	public String getName() {
+		return elements.getBinaryName(element).toString();
+	}
+
+	@Override
+	public String getPackageName() {
+		return elements.getPackageOf(element).getQualifiedName().toString();
+	}
+
+	@Override
+	public String getSimpleName() {
+		return element.getSimpleName().toString();
+	}
+
+	@Override
+	public boolean isInterface() {
+		return element.getKind() == ElementKind.INTERFACE;
+	}
+
+	@Override
+	public boolean hasTypeParameters() {
+		return !element.getTypeParameters().isEmpty();
+	}
+
+	/**
+	 * Like {@link Class#getMethods()} of an interface: the public methods of the interface and its super interfaces,
+	 * static ones only if declared by the interface itself.
+	 */
+	@Override
+	public List<DtoMethod> getMethods() {
+		List<DtoMethod> methods = new ArrayList<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(element))) {
+			TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+			if (declaringType.getKind() != ElementKind.INTERFACE
+					|| !method.getModifiers().contains(Modifier.PUBLIC)
+					|| method.getModifiers().contains(Modifier.STATIC) && !declaringType.equals(element)) {
+				continue;
+			}
+			methods.add(new ElementMethod(method, declaringType));
+		}
+		return methods;
+	}
+
+	@Override
+	public String toString() {
+		return "interface " + element.getQualifiedName();
+	}
+
+	private class ElementMethod implements DtoMethod {
+
+		private final ExecutableElement method;
+		private final TypeElement declaringType;
+
+		private ElementMethod(ExecutableElement method, TypeElement declaringType) {
+			this.method = method;
+			this.declaringType = declaringType;
+		}
+
+		@Override
+		public String getName() {
+			return method.getSimpleName().toString();
+		}
+
+		@Override
+		public boolean hasTypeParameters() {
+			return !method.getTypeParameters().isEmpty();
+		}
+
+		@Override
+		public int getParameterCount() {
+			return method.getParameters().size();
+		}
+
+		@Override
+		public boolean hasExceptionTypes() {
+			return !method.getThrownTypes().isEmpty();
+		}
+
+		@Override
+		public Type getGenericReturnType() {
+			return MirroredTypes.of(method.getReturnType(), elements);
+		}
+
+		@Override
+		public String toString() {
+			return declaringType.getQualifiedName() + "." + method;
+		}
+	}
+}
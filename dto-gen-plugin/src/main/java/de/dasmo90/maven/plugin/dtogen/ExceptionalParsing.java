@@ -7,5 +7,35 @@ public interface ExceptionalParsing {
 
 	boolean canParse(Type type);
 
+	/**
+	 * Like {@link #canParse(Type)}, but knows which interfaces DTOs get generated for.
+	 */
+	default boolean canParse(Type type, Map<String, String> oldNameToNewName) {
+		return canParse(type);
+	}
+
 	void parse(StringBuilder sb, DtoAttribute attr, Map<String, String> oldNameToNewName);
+
+	/**
+	 * Renders how a generated codec writes the field {@code value} of the attribute. DTOs with an attribute no
+	 * parsing can write get no codec, which is the default.
+	 *
+	 * @return false if the attribute cannot be written
+	 * @see CodecRenderer#appendWrite(StringBuilder, String, Type, String)
+	 */
+	default boolean appendCodecWrite(CodecRenderer codec, StringBuilder sb, String indent, DtoAttribute attr,
+			String value) {
+		return false;
+	}
+
+	/**
+	 * Renders how a generated codec reads the attribute into {@code target}, like it was written by
+	 * {@link #appendCodecWrite(CodecRenderer, StringBuilder, String, DtoAttribute, String)}.
+	 *
+	 * @return false if the attribute cannot be read
+	 */
+	default boolean appendCodecRead(CodecRenderer codec, StringBuilder sb, String indent, DtoAttribute attr,
+			String target) {
+		return false;
+	}
 }
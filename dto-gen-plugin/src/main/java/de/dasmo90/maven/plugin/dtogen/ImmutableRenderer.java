@@ -0,0 +1,120 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Renders the all-args constructor and the builder of an immutable DTO. The constructor copies arrays, lists,
+ * collections, sets, maps and optionals at every level of nesting, the collections into unmodifiable ones, see
+ * {@link DeepCopyRenderer}. The DTOs in them are immutable themselves and shared; values of other types, like dates,
+ * are shared as well. Other collections rendered by a template are copied at their top level.
+ * <p>
+ * Getters clone arrays at every level, but hand out collections unmodifiable without copying them, so arrays in
+ * collections can be changed through them; a warning is emitted for those.
+ */
+class ImmutableRenderer {
+
+	static final String BUILDER = "Builder";
+
+	private final TypeNameRewriter typeNameRewriter;
+
+	ImmutableRenderer(TypeNameRewriter typeNameRewriter) {
+		this.typeNameRewriter = typeNameRewriter;
+	}
+
+	/**
+	 * @param copyTypes the collection an attribute rendered by a template is copied into, null if it is assigned as
+	 *                  it is
+	 */
+	void renderConstructor(StringBuilder sb, String dto, List<DtoAttribute> attrs,
+			Function<DtoAttribute, String> copyTypes, boolean compactLayout, boolean computeHashCode,
+			Consumer<String> warnings) {
+		sb.append("\tpublic ").append(dto).append('(');
+		for (DtoAttribute attr : attrs) {
+			if (attr != attrs.get(0)) {
+				sb.append(", ");
+			}
+			sb.append(typeNameRewriter.rewrite(attr.getReturnType())).append(' ').append(attr.getName());
+		}
+		sb.append(") {\n");
+		DeepCopyRenderer deepCopyRenderer = new DeepCopyRenderer(typeNameRewriter, true);
+		for (DtoAttribute attr : attrs) {
+			appendAssignment(sb, attr, copyTypes, compactLayout, deepCopyRenderer);
+			Type type = attr.getReturnType();
+			if (DeepCopyRenderer.getComponentType(type) == null && DeepCopyRenderer.containsArray(type)) {
+				warnings.accept("Immutable " + dto + " hands out the arrays nested in \"" + attr.getName()
+						+ "\" without copying them: " + TypeNameRewriter.toSourceName(type));
+			}
+		}
+		if (computeHashCode) {
+			sb.append("\t\tthis.").append(CompactLayoutRenderer.CACHED_HASH_CODE).append(" = ")
+					.append(CompactLayoutRenderer.COMPUTE_HASH_CODE).append("();\n");
+		}
+		sb.append("\t}\n");
+	}
+
+	private void appendAssignment(StringBuilder sb, DtoAttribute attr, Function<DtoAttribute, String> copyTypes,
+			boolean compactLayout, DeepCopyRenderer deepCopyRenderer) {
+		Type type = attr.getReturnType();
+		String name = attr.getName();
+		String field = "this." + name;
+		CompactLayoutRenderer.PrimitiveList primitiveList = compactLayout
+				? CompactLayoutRenderer.PrimitiveList.of(type)
+				: null;
+		if (primitiveList != null) {
+			primitiveList.appendToArray(sb, "\t\t", name, field);
+			return;
+		}
+		if (DeepCopyRenderer.needsCopy(type)) {
+			deepCopyRenderer.appendCopy(sb, "\t\t", type, name, field);
+			return;
+		}
+		String copyType = copyTypes.apply(attr);
+		sb.append("\t\t").append(field).append(" = ");
+		if (copyType != null) {
+			sb.append(name).append(" == null ? null : new ").append(copyType).append("<>(")
+					.append(name).append(')');
+		} else {
+			sb.append(name);
+		}
+		sb.append(";\n");
+	}
+
+	void renderBuilder(StringBuilder sb, String dto, List<DtoAttribute> attrs) {
+		sb.append("\tpublic static ").append(BUILDER).append(" builder() {\n");
+		sb.append("\t\treturn new ").append(BUILDER).append("();\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\tpublic static final class ").append(BUILDER).append(" {\n\n");
+		for (DtoAttribute attr : attrs) {
+			sb.append("\t\tprivate ").append(typeNameRewriter.rewrite(attr.getReturnType())).append(' ')
+					.append(attr.getName()).append(";\n");
+		}
+		if (!attrs.isEmpty()) {
+			sb.append('\n');
+		}
+		sb.append("\t\tprivate ").append(BUILDER).append("() {\n");
+		sb.append("\t\t}\n\n");
+		for (DtoAttribute attr : attrs) {
+			sb.append("\t\tpublic ").append(BUILDER).append(' ').append(attr.getName()).append('(')
+					.append(typeNameRewriter.rewrite(attr.getReturnType())).append(' ').append(attr.getName())
+					.append(") {\n");
+			sb.append("\t\t\tthis.").append(attr.getName()).append(" = ").append(attr.getName()).append(";\n");
+			sb.append("\t\t\treturn this;\n");
+			sb.append("\t\t}\n\n");
+		}
+		sb.append("\t\tpublic ").append(dto).append(" build() {\n");
+		sb.append("\t\t\treturn new ").append(dto).append('(');
+		for (DtoAttribute attr : attrs) {
+			if (attr != attrs.get(0)) {
+				sb.append(", ");
+			}
+			sb.append("this.").append(attr.getName());
+		}
+		sb.append(");\n");
+		sb.append("\t\t}\n");
+		sb.append("\t}\n");
+	}
+}
@@ -0,0 +1,181 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Presents the compiler's types as {@link Type}s, so the generator and the parsings handle them like the types of a
+ * loaded class. Plain classes become {@link Named} instead of {@link Class}, nothing gets loaded.
+ */
+final class MirroredTypes {
+
+	private static final Type[] NO_TYPES = new Type[0];
+	private static final Type[] OBJECT = {Object.class};
+
+	private MirroredTypes() {
+	}
+
+	static Type of(TypeMirror mirror, Elements elements) {
+		switch (mirror.getKind()) {
+			case DECLARED:
+			case ERROR:
+				return declared((DeclaredType) mirror, elements);
+			case ARRAY:
+				return new MirroredArrayType(of(((ArrayType) mirror).getComponentType(), elements));
+			case WILDCARD:
+				WildcardType wildcard = (WildcardType) mirror;
+				if (wildcard.getSuperBound() != null) {
+					return new MirroredWildcardType(OBJECT, new Type[]{of(wildcard.getSuperBound(), elements)});
+				}
+				if (wildcard.getExtendsBound() != null) {
+					return new MirroredWildcardType(new Type[]{of(wildcard.getExtendsBound(), elements)}, NO_TYPES);
+				}
+				return new MirroredWildcardType(OBJECT, NO_TYPES);
+			default:
+				// primitives, void and type variables are written as they are
+				return new Named(mirror.toString(), mirror.toString(), false);
+		}
+	}
+
+	private static Type declared(DeclaredType declaredType, Elements elements) {
+		TypeElement element = (TypeElement) declaredType.asElement();
+		Named rawType = new Named(elements.getBinaryName(element).toString(), element.getQualifiedName().toString(),
+				element.getKind() == ElementKind.ENUM);
+		List<? extends TypeMirror> arguments = declaredType.getTypeArguments();
+		if (arguments.isEmpty()) {
+			return rawType;
+		}
+		Type[] actualTypeArguments = new Type[arguments.size()];
+		for (int i = 0; i < actualTypeArguments.length; i++) {
+			actualTypeArguments[i] = of(arguments.get(i), elements);
+		}
+		TypeMirror enclosing = declaredType.getEnclosingType();
+		Type ownerType = enclosing.getKind() == TypeKind.DECLARED ? of(enclosing, elements) : null;
+		return new MirroredParameterizedType(rawType, actualTypeArguments, ownerType);
+	}
+
+	/**
+	 * A class, primitive or type variable by name.
+	 */
+	static final class Named implements Type {
+
+		private final String name;
+		private final String canonicalName;
+		private final boolean enumType;
+
+		private Named(String name, String canonicalName, boolean enumType) {
+			this.name = name;
+			this.canonicalName = canonicalName;
+			this.enumType = enumType;
+		}
+
+		@Override
+		public String getTypeName() {
+			return name;
+		}
+
+		/**
+		 * The name as written in source code, nested classes separated by a dot.
+		 */
+		String getCanonicalName() {
+			return canonicalName;
+		}
+
+		boolean isEnum() {
+			return enumType;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final class MirroredParameterizedType implements ParameterizedType {
+
+		private final Type rawType;
+		private final Type[] actualTypeArguments;
+		private final Type ownerType;
+
+		private MirroredParameterizedType(Type rawType, Type[] actualTypeArguments, Type ownerType) {
+			this.rawType = rawType;
+			this.actualTypeArguments = actualTypeArguments;
+			this.ownerType = ownerType;
+		}
+
+		@Override
+		public Type[] getActualTypeArguments() {
+			return actualTypeArguments.clone();
+		}
+
+		@Override
+		public Type getRawType() {
+			return rawType;
+		}
+
+		@Override
+		public Type getOwnerType() {
+			return ownerType;
+		}
+
+		@Override
+		public String toString() {
+			return TypeNameRewriter.toSourceName(this);
+		}
+	}
+
+	private static final class MirroredArrayType implements GenericArrayType {
+
+		private final Type componentType;
+
+		private MirroredArrayType(Type componentType) {
+			this.componentType = componentType;
+		}
+
+		@Override
+		public Type getGenericComponentType() {
+			return componentType;
+		}
+
+		@Override
+		public String toString() {
+			return TypeNameRewriter.toSourceName(this);
+		}
+	}
+
+	private static final class MirroredWildcardType implements java.lang.reflect.WildcardType {
+
+		private final Type[] upperBounds;
+		private final Type[] lowerBounds;
+
+		private MirroredWildcardType(Type[] upperBounds, Type[] lowerBounds) {
+			this.upperBounds = upperBounds;
+			this.lowerBounds = lowerBounds;
+		}
+
+		@Override
+		public Type[] getUpperBounds() {
+			return upperBounds.clone();
+		}
+
+		@Override
+		public Type[] getLowerBounds() {
+			return lowerBounds.clone();
+		}
+
+		@Override
+		public String toString() {
+			return TypeNameRewriter.toSourceName(this);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+/**
+ * What {@link DtoGenMojo} writes for each DTO.
+ */
+public enum OutputMode {
+
+	/**
+	 * Source files, compiled with the rest of the module.
+	 */
+	SOURCES,
+
+	/**
+	 * Class files, written directly to the output directory. DTOs needing a custom collection template are still
+	 * written as source files.
+	 */
+	CLASSES,
+
+	/**
+	 * Class files as with {@link #CLASSES}, plus the source files for the IDE, which are not compiled.
+	 */
+	BOTH
+}
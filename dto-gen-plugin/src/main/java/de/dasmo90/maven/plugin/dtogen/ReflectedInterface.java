@@ -0,0 +1,96 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DtoInterface} of a loaded class.
+ */
+class ReflectedInterface implements DtoInterface {
+
+	private final Class<?> c;
+
+	ReflectedInterface(Class<?> c) {
+		this.c = c;
+	}
+
+	@Override
+	public String getName() {
+		return c.getName();
+	}
+
+	@Override
+	public String getPackageName() {
+		return c.getPackage().getName();
+	}
+
+	@Override
+	public String getSimpleName() {
+		return c.getSimpleName();
+	}
+
+	@Override
+	public boolean isInterface() {
+		return c.isInterface();
+	}
+
+	@Override
+	public boolean hasTypeParameters() {
+		return c.getTypeParameters().length > 0;
+	}
+
+	@Override
+	public List<DtoMethod> getMethods() {
+		List<DtoMethod> methods = new ArrayList<>();
+		for (Method method : c.getMethods()) {
+			methods.add(new ReflectedMethod(method));
+		}
+		return methods;
+	}
+
+	@Override
+	public String toString() {
+		return c.toString();
+	}
+
+	private static class ReflectedMethod implements DtoMethod {
+
+		private final Method method;
+
+		private ReflectedMethod(Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public String getName() {
+			return method.getName();
+		}
+
+		@Override
+		public boolean hasTypeParameters() {
+			return method.getTypeParameters().length > 0;
+		}
+
+		@Override
+		public int getParameterCount() {
+			return method.getParameterCount();
+		}
+
+		@Override
+		public boolean hasExceptionTypes() {
+			return method.getExceptionTypes().length > 0;
+		}
+
+		@Override
+		public Type getGenericReturnType() {
+			return method.getGenericReturnType();
+		}
+
+		@Override
+		public String toString() {
+			return method.toString();
+		}
+	}
+}
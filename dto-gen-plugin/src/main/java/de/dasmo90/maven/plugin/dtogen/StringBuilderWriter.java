@@ -0,0 +1,44 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.io.Writer;
+
+/**
+ * Lets a template merge straight into the source being rendered.
+ */
+class StringBuilderWriter extends Writer {
+
+	private final StringBuilder sb;
+
+	StringBuilderWriter(StringBuilder sb) {
+		this.sb = sb;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		sb.append(cbuf, off, len);
+	}
+
+	@Override
+	public void write(int c) {
+		sb.append((char) c);
+	}
+
+	@Override
+	public void write(String str, int off, int len) {
+		sb.append(str, off, off + len);
+	}
+
+	@Override
+	public Writer append(CharSequence csq) {
+		sb.append(csq);
+		return this;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,47 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One Velocity engine per plugin class loader, with the parsed templates cached by path. Templates are loaded from
+ * the classpath, so additional ones can be added as plugin dependency.
+ */
+public final class TemplateRegistry {
+
+	private static TemplateRegistry instance;
+
+	private final VelocityEngine engine;
+	private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+	private TemplateRegistry() throws Exception {
+		/*  first, get and initialize an engine  */
+		engine = new VelocityEngine();
+		engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
+		engine.setProperty("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
+
+		engine.init();
+	}
+
+	public static synchronized TemplateRegistry getInstance() throws Exception {
+		if (instance == null) {
+			instance = new TemplateRegistry();
+		}
+		return instance;
+	}
+
+	public Template getTemplate(String path) throws Exception {
+		Template template = templates.get(path);
+		if (template == null) {
+			// parsing twice in a race does no harm, both results are equal
+			template = engine.getTemplate(path);
+			templates.put(path, template);
+		}
+		return template;
+	}
+}
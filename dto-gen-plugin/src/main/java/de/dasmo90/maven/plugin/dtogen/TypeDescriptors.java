@@ -0,0 +1,133 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders types as descriptors and generic signatures of the class file format, while replacing every class found
+ * in the map, like {@link TypeNameRewriter} does for source code. Works on names only, nothing gets loaded.
+ */
+class TypeDescriptors {
+
+	private static final Map<String, String> PRIMITIVES = new HashMap<>();
+
+	static {
+		PRIMITIVES.put("boolean", "Z");
+		PRIMITIVES.put("byte", "B");
+		PRIMITIVES.put("char", "C");
+		PRIMITIVES.put("short", "S");
+		PRIMITIVES.put("int", "I");
+		PRIMITIVES.put("long", "J");
+		PRIMITIVES.put("float", "F");
+		PRIMITIVES.put("double", "D");
+		PRIMITIVES.put("void", "V");
+	}
+
+	private static final TypeDescriptors PLAIN = new TypeDescriptors(Collections.emptyMap());
+
+	private final Map<String, String> oldNameToNewName;
+
+	TypeDescriptors(Map<String, String> oldNameToNewName) {
+		this.oldNameToNewName = oldNameToNewName;
+	}
+
+	static TypeDescriptors plain() {
+		return PLAIN;
+	}
+
+	/**
+	 * The descriptor of the erased type, e.g. {@code Ljava/util/List;}.
+	 */
+	String descriptor(Type type) {
+		if (type instanceof Class && ((Class<?>) type).isArray()) {
+			return "[" + descriptor(((Class<?>) type).getComponentType());
+		}
+		if (type instanceof GenericArrayType) {
+			return "[" + descriptor(((GenericArrayType) type).getGenericComponentType());
+		}
+		if (type instanceof ParameterizedType) {
+			return descriptor(((ParameterizedType) type).getRawType());
+		}
+		if (type instanceof WildcardType) {
+			return descriptor(((WildcardType) type).getUpperBounds()[0]);
+		}
+		if (type instanceof TypeVariable) {
+			return "Ljava/lang/Object;";
+		}
+		String name = type.getTypeName();
+		String primitive = PRIMITIVES.get(name);
+		return primitive != null ? primitive : "L" + internalName(name) + ";";
+	}
+
+	/**
+	 * The generic signature, or null if the type is not generic and the descriptor says it all.
+	 */
+	String signature(Type type) {
+		if (!isGeneric(type)) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		appendSignature(sb, type);
+		return sb.toString();
+	}
+
+	/**
+	 * The binary name with slashes, after replacement.
+	 */
+	String internalName(String name) {
+		String newName = oldNameToNewName.get(name);
+		return (newName == null ? name : newName).replace('.', '/');
+	}
+
+	private static boolean isGeneric(Type type) {
+		if (type instanceof GenericArrayType) {
+			return isGeneric(((GenericArrayType) type).getGenericComponentType());
+		}
+		return type instanceof ParameterizedType || type instanceof WildcardType || type instanceof TypeVariable;
+	}
+
+	private void appendSignature(StringBuilder sb, Type type) {
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterizedType = (ParameterizedType) type;
+			String rawName = internalName(parameterizedType.getRawType().getTypeName());
+			Type ownerType = parameterizedType.getOwnerType();
+			if (ownerType instanceof ParameterizedType) {
+				appendSignature(sb, ownerType);
+				// the owner is closed by its semicolon, the inner class follows after a dot
+				sb.setLength(sb.length() - 1);
+				sb.append('.').append(rawName.substring(rawName.lastIndexOf('$') + 1));
+			} else {
+				sb.append('L').append(rawName);
+			}
+			sb.append('<');
+			for (Type argument : parameterizedType.getActualTypeArguments()) {
+				appendSignature(sb, argument);
+			}
+			sb.append(">;");
+		} else if (type instanceof WildcardType) {
+			WildcardType wildcardType = (WildcardType) type;
+			if (wildcardType.getLowerBounds().length > 0) {
+				sb.append('-');
+				appendSignature(sb, wildcardType.getLowerBounds()[0]);
+			} else if (Object.class.equals(wildcardType.getUpperBounds()[0])) {
+				sb.append('*');
+			} else {
+				sb.append('+');
+				appendSignature(sb, wildcardType.getUpperBounds()[0]);
+			}
+		} else if (type instanceof GenericArrayType) {
+			sb.append('[');
+			appendSignature(sb, ((GenericArrayType) type).getGenericComponentType());
+		} else if (type instanceof TypeVariable) {
+			sb.append('T').append(((TypeVariable<?>) type).getName()).append(';');
+		} else {
+			sb.append(descriptor(type));
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package de.dasmo90.maven.plugin.dtogen;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Renders a type as it is written in source code, while replacing every class found in the map. Walks the type
+ * structure, so each class costs one hash lookup.
+ */
+public class TypeNameRewriter {
+
+	private static final TypeNameRewriter SOURCE_NAMES = new TypeNameRewriter(Collections.emptyMap());
+
+	private final Map<String, String> oldNameToNewName;
+
+	public TypeNameRewriter(Map<String, String> oldNameToNewName) {
+		this.oldNameToNewName = oldNameToNewName;
+	}
+
+	public String rewrite(Type type) {
+		StringBuilder sb = new StringBuilder();
+		append(sb, type, true);
+		return sb.toString();
+	}
+
+	/**
+	 * The type as it is written in source code, without any replacement.
+	 */
+	public static String toSourceName(Type type) {
+		StringBuilder sb = new StringBuilder();
+		SOURCE_NAMES.append(sb, type, false);
+		return sb.toString();
+	}
+
+	/**
+	 * Whether the type mentions a class of the map anywhere in its structure.
+	 */
+	public boolean references(Type type) {
+		if (type instanceof Class) {
+			Class<?> c = (Class<?>) type;
+			return c.isArray() ? references(c.getComponentType()) : oldNameToNewName.containsKey(c.getName());
+		}
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterizedType = (ParameterizedType) type;
+			if (references(parameterizedType.getRawType())) {
+				return true;
+			}
+			for (Type argument : parameterizedType.getActualTypeArguments()) {
+				if (references(argument)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (type instanceof WildcardType) {
+			WildcardType wildcardType = (WildcardType) type;
+			for (Type bound : wildcardType.getUpperBounds()) {
+				if (references(bound)) {
+					return true;
+				}
+			}
+			for (Type bound : wildcardType.getLowerBounds()) {
+				if (references(bound)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (type instanceof GenericArrayType) {
+			return references(((GenericArrayType) type).getGenericComponentType());
+		}
+		if (type instanceof TypeVariable) {
+			return false;
+		}
+		return oldNameToNewName.containsKey(type.getTypeName());
+	}
+
+	private void append(StringBuilder sb, Type type, boolean replace) {
+		if (type instanceof Class) {
+			Class<?> c = (Class<?>) type;
+			if (c.isArray()) {
+				append(sb, c.getComponentType(), replace);
+				sb.append("[]");
+			} else {
+				appendName(sb, c.getName(), c.getCanonicalName(), replace);
+			}
+		} else if (type instanceof ParameterizedType) {
+			appendParameterized(sb, (ParameterizedType) type, replace);
+		} else if (type instanceof WildcardType) {
+			appendWildcard(sb, (WildcardType) type, replace);
+		} else if (type instanceof GenericArrayType) {
+			append(sb, ((GenericArrayType) type).getGenericComponentType(), replace);
+			sb.append("[]");
+		} else if (type instanceof TypeVariable) {
+			sb.append(type.getTypeName());
+		} else if (type instanceof MirroredTypes.Named) {
+			appendName(sb, type.getTypeName(), ((MirroredTypes.Named) type).getCanonicalName(), replace);
+		} else {
+			appendName(sb, type.getTypeName(), null, replace);
+		}
+	}
+
+	private void appendName(StringBuilder sb, String name, String canonicalName, boolean replace) {
+		String newName = replace ? oldNameToNewName.get(name) : null;
+		if (newName != null) {
+			sb.append(newName);
+		} else {
+			// nested classes are written with a dot instead of the dollar of their binary name
+			sb.append(canonicalName == null ? name : canonicalName);
+		}
+	}
+
+	private void appendParameterized(StringBuilder sb, ParameterizedType type, boolean replace) {
+		Type rawType = type.getRawType();
+		Type ownerType = type.getOwnerType();
+		if (ownerType instanceof ParameterizedType && rawType instanceof Class) {
+			append(sb, ownerType, replace);
+			sb.append('.');
+			sb.append(((Class<?>) rawType).getSimpleName());
+		} else {
+			append(sb, rawType, replace);
+		}
+		Type[] arguments = type.getActualTypeArguments();
+		if (arguments.length > 0) {
+			sb.append('<');
+			for (int i = 0; i < arguments.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				append(sb, arguments[i], replace);
+			}
+			sb.append('>');
+		}
+	}
+
+	private void appendWildcard(StringBuilder sb, WildcardType type, boolean replace) {
+		Type[] bounds = type.getLowerBounds();
+		if (bounds.length > 0) {
+			sb.append("? super ");
+		} else {
+			bounds = type.getUpperBounds();
+			if (bounds.length == 0 || Object.class.equals(bounds[0])) {
+				sb.append('?');
+				return;
+			}
+			sb.append("? extends ");
+		}
+		for (int i = 0; i < bounds.length; i++) {
+			if (i > 0) {
+				sb.append(" & ");
+			}
+			append(sb, bounds[i], replace);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package de.dasmo90.maven.plugin.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the class loaders and jars opened by the plugins. Every counter is also added to the JVM-wide
+ * {@link #global()} one, which has to stay flat over many builds in the same JVM.
+ */
+public class ClassLoaderMetrics {
+
+	private static final ClassLoaderMetrics GLOBAL = new ClassLoaderMetrics(null);
+
+	private final ClassLoaderMetrics parent;
+	private final AtomicLong openLoaders = new AtomicLong();
+	private final AtomicLong openJars = new AtomicLong();
+	private final AtomicLong loadedClasses = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	public ClassLoaderMetrics() {
+		this(GLOBAL);
+	}
+
+	private ClassLoaderMetrics(ClassLoaderMetrics parent) {
+		this.parent = parent;
+	}
+
+	public static ClassLoaderMetrics global() {
+		return GLOBAL;
+	}
+
+	public long getOpenLoaders() {
+		return openLoaders.get();
+	}
+
+	public long getOpenJars() {
+		return openJars.get();
+	}
+
+	public long getLoadedClasses() {
+		return loadedClasses.get();
+	}
+
+	/**
+	 * Bytes of class files read by scans.
+	 */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	void loaderOpened(int jars) {
+		openLoaders.incrementAndGet();
+		openJars.addAndGet(jars);
+		if (parent != null) {
+			parent.loaderOpened(jars);
+		}
+	}
+
+	void loaderClosed(int jars) {
+		openLoaders.decrementAndGet();
+		openJars.addAndGet(-jars);
+		if (parent != null) {
+			parent.loaderClosed(jars);
+		}
+	}
+
+	void jarsOpened(int jars) {
+		openJars.addAndGet(jars);
+		if (parent != null) {
+			parent.jarsOpened(jars);
+		}
+	}
+
+	void jarsClosed(int jars) {
+		jarsOpened(-jars);
+	}
+
+	void classLoaded() {
+		loadedClasses.incrementAndGet();
+		if (parent != null) {
+			parent.classLoaded();
+		}
+	}
+
+	void bytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+		if (parent != null) {
+			parent.bytesRead(bytes);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return openLoaders + " class loaders with " + openJars + " jars open, " + loadedClasses + " classes loaded, "
+				+ bytesRead + " bytes of class files read";
+	}
+}
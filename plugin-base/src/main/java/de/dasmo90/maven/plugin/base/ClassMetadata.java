@@ -0,0 +1,128 @@
+package de.dasmo90.maven.plugin.base;
+
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class-file header information read straight from the bytecode, without defining the class.
+ */
+public class ClassMetadata implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String name;
+	private final int accessFlags;
+	private final String superclass;
+	private final List<String> interfaces;
+	private final List<String> annotations;
+
+	public ClassMetadata(String name, int accessFlags, String superclass, List<String> interfaces,
+			List<String> annotations) {
+		this.name = name;
+		this.accessFlags = accessFlags;
+		this.superclass = superclass;
+		this.interfaces = Collections.unmodifiableList(new ArrayList<>(interfaces));
+		this.annotations = Collections.unmodifiableList(new ArrayList<>(annotations));
+	}
+
+	public static ClassMetadata read(InputStream in) throws IOException {
+		ClassFile classFile = new ClassFile(new DataInputStream(new BufferedInputStream(in)));
+
+		List<String> annotations = new ArrayList<>();
+		AnnotationsAttribute visible = (AnnotationsAttribute) classFile.getAttribute(AnnotationsAttribute.visibleTag);
+		if (visible != null) {
+			for (Annotation annotation : visible.getAnnotations()) {
+				annotations.add(annotation.getTypeName());
+			}
+		}
+		return new ClassMetadata(classFile.getName(), classFile.getAccessFlags(), classFile.getSuperclass(),
+				Arrays.asList(classFile.getInterfaces()), annotations);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getAccessFlags() {
+		return accessFlags;
+	}
+
+	public String getSuperclass() {
+		return superclass;
+	}
+
+	public List<String> getInterfaces() {
+		return interfaces;
+	}
+
+	public List<String> getAnnotations() {
+		return annotations;
+	}
+
+	public boolean isInterface() {
+		return (accessFlags & AccessFlag.INTERFACE) != 0;
+	}
+
+	public boolean isAnnotation() {
+		return (accessFlags & AccessFlag.ANNOTATION) != 0;
+	}
+
+	public boolean isAbstract() {
+		return (accessFlags & AccessFlag.ABSTRACT) != 0;
+	}
+
+	public boolean isAnnotatedWith(Class<? extends java.lang.annotation.Annotation> annotation) {
+		return annotations.contains(annotation.getName());
+	}
+
+	public boolean implementsInterface(Class<?> interfac) {
+		return interfaces.contains(interfac.getName());
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		ClassMetadata that = (ClassMetadata) o;
+
+		if (accessFlags != that.accessFlags) return false;
+		if (!name.equals(that.name)) return false;
+		if (superclass != null ? !superclass.equals(that.superclass) : that.superclass != null) return false;
+		if (!interfaces.equals(that.interfaces)) return false;
+		return annotations.equals(that.annotations);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = name.hashCode();
+		result = 31 * result + accessFlags;
+		result = 31 * result + (superclass != null ? superclass.hashCode() : 0);
+		result = 31 * result + interfaces.hashCode();
+		result = 31 * result + annotations.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassMetadata{" +
+				"name='" + name + '\'' +
+				", accessFlags=" + accessFlags +
+				", superclass='" + superclass + '\'' +
+				", interfaces=" + interfaces +
+				", annotations=" + annotations +
+				'}';
+	}
+}
@@ -0,0 +1,139 @@
+package de.dasmo90.maven.plugin.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * Class loaders over dependency jars and opened jars, shared by the modules of a build. Modules with the same
+ * dependencies get the same loader, so each jar is opened once per build instead of once per module. Everything is
+ * closed together with the cache.
+ */
+public class ClasspathCache implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ClasspathCache.class);
+
+	private final ClassLoaderMetrics metrics = new ClassLoaderMetrics();
+	private final Map<LoaderKey, URLClassLoader> loaders = new HashMap<>();
+	private final Map<String, OpenJar> jars = new HashMap<>();
+	private final List<AutoCloseable> replaced = new ArrayList<>();
+
+	public ClassLoaderMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return a loader over the jars, in their order, shared with every caller asking for the same jars and parent
+	 */
+	public synchronized ClassLoader getDependencyLoader(ClassLoader parent, List<URL> jarUrls) {
+		List<String> fingerprints = new ArrayList<>();
+		for (URL url : jarUrls) {
+			File jar = toFile(url);
+			// a jar rebuilt by an earlier module of the reactor needs a new loader
+			fingerprints.add(jar == null ? url.toString() : jar + ":" + jar.length() + ":" + jar.lastModified());
+		}
+		LoaderKey key = new LoaderKey(parent, fingerprints);
+		URLClassLoader loader = loaders.get(key);
+		if (loader == null) {
+			loader = new CountingClassLoader(jarUrls.toArray(new URL[jarUrls.size()]), parent, metrics);
+			loaders.put(key, loader);
+			LOG.debug("Created dependency class loader over {} jars.", jarUrls.size());
+		} else {
+			LOG.debug("Reusing dependency class loader over {} jars.", jarUrls.size());
+		}
+		return loader;
+	}
+
+	/**
+	 * @return the opened jar, must not be closed by the caller
+	 */
+	public synchronized ZipFile openJar(File jar) throws IOException {
+		String fingerprint = jar.length() + ":" + jar.lastModified();
+		OpenJar open = jars.get(jar.getAbsolutePath());
+		if (open != null && open.fingerprint.equals(fingerprint)) {
+			return open.zipFile;
+		}
+		if (open != null) {
+			// other threads might still read the old one
+			replaced.add(open.zipFile);
+		}
+		ZipFile zipFile = new ZipFile(jar);
+		metrics.jarsOpened(1);
+		jars.put(jar.getAbsolutePath(), new OpenJar(fingerprint, zipFile));
+		return zipFile;
+	}
+
+	@Override
+	public synchronized void close() {
+		List<AutoCloseable> closing = new ArrayList<>(loaders.values());
+		jars.values().forEach(open -> closing.add(open.zipFile));
+		closing.addAll(replaced);
+		metrics.jarsClosed(jars.size() + replaced.size());
+		loaders.clear();
+		jars.clear();
+		replaced.clear();
+		for (AutoCloseable closeable : closing) {
+			try {
+				closeable.close();
+			} catch (Exception e) {
+				LOG.warn("Failed to close {}: {}", closeable, e.getMessage());
+			}
+		}
+		LOG.debug("Closed {} shared class loaders and jars.", closing.size());
+	}
+
+	static File toFile(URL url) {
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static class OpenJar {
+
+		private final String fingerprint;
+		private final ZipFile zipFile;
+
+		private OpenJar(String fingerprint, ZipFile zipFile) {
+			this.fingerprint = fingerprint;
+			this.zipFile = zipFile;
+		}
+	}
+
+	private static class LoaderKey {
+
+		private final ClassLoader parent;
+		private final List<String> jars;
+
+		private LoaderKey(ClassLoader parent, List<String> jars) {
+			this.parent = parent;
+			this.jars = jars;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			LoaderKey that = (LoaderKey) o;
+
+			return parent == that.parent && jars.equals(that.jars);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(parent) + jars.hashCode();
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package de.dasmo90.maven.plugin.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the class-file headers of all classes below the given package prefixes. No class gets defined.
+ */
+public class ClasspathScanner {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ClasspathScanner.class);
+
+	private static final String CLASS_SUFFIX = ".class";
+
+	private final ScanIndex index;
+	private final String[] prefixes;
+	private int threads = 1;
+	private ClasspathCache classpathCache;
+	private ClassLoaderMetrics metrics;
+	private Instrumentation instrumentation = Instrumentation.NONE;
+
+	public ClasspathScanner(String... prefixes) {
+		this(null, prefixes);
+	}
+
+	public ClasspathScanner(ScanIndex index, String... prefixes) {
+		this.index = index;
+		this.prefixes = prefixes;
+	}
+
+	/**
+	 * Number of classpath roots scanned concurrently; values below 1 use one thread per available processor.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/**
+	 * Takes the opened jars from the cache instead of opening and closing them on every scan.
+	 */
+	public void setClasspathCache(ClasspathCache classpathCache) {
+		this.classpathCache = classpathCache;
+	}
+
+	/**
+	 * Counts the bytes of the class files read.
+	 */
+	public void setMetrics(ClassLoaderMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Records the scan time of each root and the number of class files read.
+	 */
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public List<ClassMetadata> scan(List<URL> roots) {
+		Map<String, ClassMetadata> found = new LinkedHashMap<>();
+		for (List<ClassMetadata> scanned : scanRoots(roots)) {
+			for (ClassMetadata metadata : scanned) {
+				// first one wins, just like the class loader does
+				found.putIfAbsent(metadata.getName(), metadata);
+			}
+		}
+		return new ArrayList<>(found.values());
+	}
+
+	private List<List<ClassMetadata>> scanRoots(List<URL> roots) {
+		if (threads <= 1 || roots.size() <= 1) {
+			return roots.stream().map(this::scanRoot).collect(Collectors.toList());
+		}
+		ForkJoinPool pool = new ForkJoinPool(Math.min(threads, roots.size()));
+		try {
+			// the results keep the classpath order, whichever root finishes first
+			return pool.submit(() -> roots.parallelStream().map(this::scanRoot).collect(Collectors.toList())).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while scanning the classpath.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to scan the classpath.", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	List<ClassMetadata> scanRoot(URL root) {
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("scan.root:" + root.getPath())) {
+			return scanRootUntimed(root);
+		}
+	}
+
+	private List<ClassMetadata> scanRootUntimed(URL root) {
+		File file;
+		try {
+			file = new File(root.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			LOG.warn("Cannot scan \"{}\", not a file.", root);
+			return new ArrayList<>();
+		}
+		try {
+			if (file.isDirectory()) {
+				return scanDirectory(file.toPath());
+			}
+			if (file.isFile()) {
+				return scanJar(file);
+			}
+		} catch (IOException e) {
+			LOG.warn("Failed to scan \"{}\": {}", file, e.getMessage());
+		}
+		return new ArrayList<>();
+	}
+
+	private List<ClassMetadata> scanDirectory(Path directory) throws IOException {
+		List<Path> classFiles;
+		try (Stream<Path> paths = Files.walk(directory)) {
+			classFiles = paths
+					.filter(p -> matches(directory.relativize(p).toString().replace(File.separatorChar, '/')))
+					.filter(Files::isRegularFile)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+
+		String fingerprint = null;
+		if (index != null) {
+			fingerprint = fingerprint(directory, classFiles);
+			List<ClassMetadata> indexed = index.get(directory.toFile(), fingerprint);
+			if (indexed != null) {
+				LOG.debug("Serving \"{}\" from scan index.", directory);
+				return indexed;
+			}
+		}
+
+		List<ClassMetadata> result = new ArrayList<>();
+		for (Path classFile : classFiles) {
+			try (InputStream in = Files.newInputStream(classFile)) {
+				add(result, in, classFile.toString());
+			}
+		}
+		if (index != null) {
+			index.put(directory.toFile(), fingerprint, result);
+		}
+		return result;
+	}
+
+	private List<ClassMetadata> scanJar(File jar) throws IOException {
+		String fingerprint = null;
+		if (index != null) {
+			fingerprint = jar.length() + ":" + jar.lastModified();
+			List<ClassMetadata> indexed = index.get(jar, fingerprint);
+			if (indexed != null) {
+				LOG.debug("Serving \"{}\" from scan index.", jar);
+				return indexed;
+			}
+		}
+
+		List<ClassMetadata> result = new ArrayList<>();
+		if (JarPackageIndex.mayContain(jar, prefixes)) {
+			readJar(jar, result);
+		} else {
+			LOG.debug("Skipping \"{}\", no package matches.", jar);
+		}
+		if (index != null) {
+			index.put(jar, fingerprint, result);
+		}
+		return result;
+	}
+
+	private void readJar(File jar, List<ClassMetadata> result) throws IOException {
+		if (classpathCache != null) {
+			readJar(jar, classpathCache.openJar(jar), result);
+			return;
+		}
+		try (ZipFile zipFile = new ZipFile(jar)) {
+			readJar(jar, zipFile, result);
+		}
+	}
+
+	private void readJar(File jar, ZipFile zipFile, List<ClassMetadata> result) throws IOException {
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (entry.isDirectory() || !matches(entry.getName())) {
+				continue;
+			}
+			try (InputStream in = zipFile.getInputStream(entry)) {
+				add(result, in, jar + "!/" + entry.getName());
+			}
+		}
+	}
+
+	/**
+	 * Output directories change file by file, so their fingerprint covers path, size and modification time of
+	 * every class file below the prefixes.
+	 */
+	private static String fingerprint(Path directory, List<Path> classFiles) throws IOException {
+		MessageDigest digest = Fingerprints.newDigest();
+		for (Path classFile : classFiles) {
+			String line = directory.relativize(classFile) + ":" + Files.size(classFile) + ":"
+					+ Files.getLastModifiedTime(classFile).toMillis() + "\n";
+			digest.update(line.getBytes(StandardCharsets.UTF_8));
+		}
+		return Fingerprints.toHex(digest.digest());
+	}
+
+	private void add(List<ClassMetadata> result, InputStream in, String location) {
+		CountingInputStream counting = new CountingInputStream(in);
+		instrumentation.count("scan.classFiles");
+		try {
+			result.add(ClassMetadata.read(counting));
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Cannot read class file \"{}\": {}", location, e.getMessage());
+		} finally {
+			if (metrics != null) {
+				metrics.bytesRead(counting.count);
+			}
+		}
+	}
+
+	boolean matches(String relativePath) {
+		if (!relativePath.endsWith(CLASS_SUFFIX)) {
+			return false;
+		}
+		String fqn = relativePath.replace('/', '.');
+		for (String prefix : prefixes) {
+			if (fqn.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
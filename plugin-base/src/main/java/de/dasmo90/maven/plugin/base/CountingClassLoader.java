@@ -0,0 +1,98 @@
+package de.dasmo90.maven.plugin.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Counts the classes it defines and reports the jars it holds open until it is closed. Optionally asks another loader,
+ * or the bootstrap loader, before its own URLs and its parent only after them.
+ */
+class CountingClassLoader extends URLClassLoader {
+
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	private final ClassLoaderMetrics metrics;
+	private final ClassLoader first;
+	private final boolean parentLast;
+	private final int jars;
+	private boolean closed;
+
+	CountingClassLoader(URL[] urls, ClassLoader parent, ClassLoaderMetrics metrics) {
+		this(urls, null, false, parent, metrics);
+	}
+
+	/**
+	 * @param first asked before the URLs, the bootstrap loader if null, while the parent is asked after them
+	 */
+	CountingClassLoader(URL[] urls, ClassLoader first, ClassLoader parent, ClassLoaderMetrics metrics) {
+		this(urls, first, true, parent, metrics);
+	}
+
+	private CountingClassLoader(URL[] urls, ClassLoader first, boolean parentLast, ClassLoader parent,
+			ClassLoaderMetrics metrics) {
+		super(urls, parent);
+		this.metrics = metrics;
+		this.first = first;
+		this.parentLast = parentLast;
+		int jars = 0;
+		for (URL url : urls) {
+			File file = ClasspathCache.toFile(url);
+			if (file != null && file.isFile()) {
+				jars++;
+			}
+		}
+		this.jars = jars;
+		metrics.loaderOpened(jars);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (!parentLast) {
+			return super.loadClass(name, resolve);
+		}
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				try {
+					c = first != null ? first.loadClass(name) : Class.forName(name, false, null);
+				} catch (ClassNotFoundException e) {
+					try {
+						c = findClass(name);
+					} catch (ClassNotFoundException notOwn) {
+						c = getParent().loadClass(name);
+					}
+				}
+			}
+			if (resolve) {
+				resolveClass(c);
+			}
+			return c;
+		}
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		Class<?> c = super.findClass(name);
+		metrics.classLoaded();
+		return c;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		try {
+			super.close();
+		} finally {
+			metrics.loaderClosed(jars);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package de.dasmo90.maven.plugin.base;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Fingerprints of the previous build next to the ones of the current build, stored as a properties file.
+ */
+public class FingerprintIndex {
+
+	private final File file;
+	private final Properties previous = new Properties();
+	private final Properties current = new Properties();
+
+	private FingerprintIndex(File file) {
+		this.file = file;
+	}
+
+	public static FingerprintIndex load(File file) throws IOException {
+		FingerprintIndex index = new FingerprintIndex(file);
+		if (file.isFile()) {
+			try (InputStream in = new FileInputStream(file)) {
+				index.previous.load(in);
+			}
+		}
+		return index;
+	}
+
+	public boolean isUnchanged(String key, String fingerprint) {
+		return fingerprint.equals(previous.getProperty(key));
+	}
+
+	public void put(String key, String fingerprint) {
+		current.setProperty(key, fingerprint);
+	}
+
+	/**
+	 * Keys known to the previous build which were not put in this one.
+	 */
+	public Set<String> removed() {
+		Set<String> removed = new HashSet<>(previous.stringPropertyNames());
+		removed.removeAll(current.stringPropertyNames());
+		return removed;
+	}
+
+	public void save() throws IOException {
+		File parent = file.getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Couldn't create dir: " + parent);
+		}
+		try (OutputStream out = new FileOutputStream(file)) {
+			current.store(out, null);
+		}
+	}
+}
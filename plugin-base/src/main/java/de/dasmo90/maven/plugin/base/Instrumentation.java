@@ -0,0 +1,220 @@
+package de.dasmo90.maven.plugin.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the timings and counts of a mojo execution and writes them as JSON report. Thread safe, timings of the
+ * same name are summed up, so per-item timings of concurrent tasks add up to more than the wall time.
+ */
+public class Instrumentation {
+
+	/**
+	 * Records nothing, for callers which are not instrumented.
+	 */
+	public static final Instrumentation NONE = new Instrumentation(false);
+
+	private static final Stopwatch NO_STOPWATCH = () -> {
+	};
+
+	private final boolean enabled;
+	private final String prefix;
+	private final long started;
+	private final ConcurrentMap<String, String> attributes;
+	private final ConcurrentMap<String, Timing> timings;
+	private final ConcurrentMap<String, LongAdder> counters;
+
+	public Instrumentation() {
+		this(true);
+	}
+
+	private Instrumentation(boolean enabled) {
+		this.enabled = enabled;
+		this.prefix = "";
+		this.started = System.nanoTime();
+		this.attributes = new ConcurrentHashMap<>();
+		this.timings = new ConcurrentHashMap<>();
+		this.counters = new ConcurrentHashMap<>();
+	}
+
+	private Instrumentation(Instrumentation parent, String prefix) {
+		this.enabled = parent.enabled;
+		this.prefix = parent.prefix + prefix + "/";
+		this.started = parent.started;
+		this.attributes = parent.attributes;
+		this.timings = parent.timings;
+		this.counters = parent.counters;
+	}
+
+	/**
+	 * @return a view recording into the same report, with names below the given prefix
+	 */
+	public Instrumentation scope(String prefix) {
+		return prefix == null || prefix.isEmpty() ? this : new Instrumentation(this, prefix);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setAttribute(String name, String value) {
+		if (enabled && value != null) {
+			attributes.put(prefix + name, value);
+		}
+	}
+
+	/**
+	 * Starts timing, the time is recorded when the returned stopwatch is closed.
+	 */
+	public Stopwatch start(String name) {
+		if (!enabled) {
+			return NO_STOPWATCH;
+		}
+		long start = System.nanoTime();
+		return () -> record(name, System.nanoTime() - start);
+	}
+
+	public void record(String name, long nanos) {
+		if (enabled) {
+			timings.computeIfAbsent(prefix + name, n -> new Timing()).add(nanos);
+		}
+	}
+
+	public void count(String name, long delta) {
+		if (enabled) {
+			counters.computeIfAbsent(prefix + name, n -> new LongAdder()).add(delta);
+		}
+	}
+
+	public void count(String name) {
+		count(name, 1);
+	}
+
+	/**
+	 * Takes the current values of the given class loader counters.
+	 */
+	public void count(String name, ClassLoaderMetrics metrics) {
+		count(name + ".openLoaders", metrics.getOpenLoaders());
+		count(name + ".openJars", metrics.getOpenJars());
+		count(name + ".loadedClasses", metrics.getLoadedClasses());
+		count(name + ".bytesRead", metrics.getBytesRead());
+	}
+
+	public void writeReport(File file) throws IOException {
+		File dir = file.getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs()) {
+			throw new IllegalStateException("Couldn't create dir: " + dir.getAbsolutePath());
+		}
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(toJson());
+		}
+	}
+
+	String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("\t\"wallTimeMs\": ").append(toMillis(System.nanoTime() - started)).append(",\n");
+		sb.append("\t\"attributes\": {");
+		appendEntries(sb, new TreeMap<>(attributes), (value, out) -> appendString(out, value));
+		sb.append("},\n");
+		sb.append("\t\"timings\": {");
+		appendEntries(sb, new TreeMap<>(timings), (timing, out) -> out
+				.append("{\"count\": ").append(timing.count.sum())
+				.append(", \"totalMs\": ").append(toMillis(timing.total.sum()))
+				.append(", \"maxMs\": ").append(toMillis(timing.max.get()))
+				.append('}'));
+		sb.append("},\n");
+		sb.append("\t\"counters\": {");
+		appendEntries(sb, new TreeMap<>(counters), (counter, out) -> out.append(counter.sum()));
+		sb.append("}\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private static <V> void appendEntries(StringBuilder sb, Map<String, V> entries, ValueWriter<V> valueWriter) {
+		boolean first = true;
+		for (Map.Entry<String, V> entry : entries.entrySet()) {
+			sb.append(first ? "\n" : ",\n");
+			first = false;
+			sb.append("\t\t");
+			appendString(sb, entry.getKey());
+			sb.append(": ");
+			valueWriter.write(entry.getValue(), sb);
+		}
+		if (!first) {
+			sb.append("\n\t");
+		}
+	}
+
+	private static void appendString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		sb.append('"');
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+	}
+
+	/**
+	 * Closing records the time since it was started, it never throws.
+	 */
+	public interface Stopwatch extends AutoCloseable {
+
+		@Override
+		void close();
+	}
+
+	private interface ValueWriter<V> {
+
+		void write(V value, StringBuilder out);
+	}
+
+	private static class Timing {
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		private void add(long nanos) {
+			count.increment();
+			total.add(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package de.dasmo90.maven.plugin.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Packages of the classes contained in a jar, read from the central directory only. Tells whether a jar can hold
+ * any class below the package prefixes before a single entry gets inflated.
+ */
+public final class JarPackageIndex {
+
+	private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+	private JarPackageIndex() {
+	}
+
+	public static boolean mayContain(File jar, String... prefixes) throws IOException {
+		Set<String> packages = packagesOf(jar);
+		for (String prefix : prefixes) {
+			for (String pkg : packages) {
+				if (pkg.isEmpty() ? prefix.indexOf('.') < 0
+						: (pkg + ".").startsWith(prefix) || prefix.startsWith(pkg + ".")) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public static Set<String> packagesOf(File jar) throws IOException {
+		String fingerprint = jar.length() + ":" + jar.lastModified();
+		Entry entry = CACHE.get(jar.getAbsolutePath());
+		if (entry != null && entry.fingerprint.equals(fingerprint)) {
+			return entry.packages;
+		}
+
+		Set<String> packages = new HashSet<>();
+		try (ZipFile zipFile = new ZipFile(jar)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if (name.endsWith(".class")) {
+					int slash = name.lastIndexOf('/');
+					packages.add(slash < 0 ? "" : name.substring(0, slash).replace('/', '.'));
+				}
+			}
+		}
+		entry = new Entry(fingerprint, Collections.unmodifiableSet(packages));
+		CACHE.put(jar.getAbsolutePath(), entry);
+		return entry.packages;
+	}
+
+	private static class Entry {
+
+		private final String fingerprint;
+		private final Set<String> packages;
+
+		private Entry(String fingerprint, Set<String> packages) {
+			this.fingerprint = fingerprint;
+			this.packages = packages;
+		}
+	}
+}
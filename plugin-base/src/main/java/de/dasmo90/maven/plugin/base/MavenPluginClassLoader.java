@@ -18,8 +18,10 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
@@ -27,13 +29,22 @@ import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-public class MavenPluginClassLoader extends ClassLoader {
+/**
+ * Loads the classes of a project and its compile classpath. Has to be closed, otherwise the jars it opened stay open
+ * until it is garbage collected.
+ */
+public class MavenPluginClassLoader extends ClassLoader implements AutoCloseable {
 
 	private static final Logger LOG = LoggerFactory.getLogger(MavenPluginClassLoader.class);
 
 	private final MavenProject project;
 	private final LinkedList<URL> urls;
 	private final URLClassLoader urlClassLoader;
+	private final ClasspathCache classpathCache;
+	private final ClassLoaderMetrics metrics = new ClassLoaderMetrics();
+	private File scanIndexFile;
+	private int scanThreads = 1;
+	private Instrumentation instrumentation = Instrumentation.NONE;
 
 	public MavenPluginClassLoader(MavenProject project) throws DependencyResolutionRequiredException {
 		this(project, project.getClassRealm());
@@ -41,12 +52,59 @@ public class MavenPluginClassLoader extends ClassLoader {
 
 	public MavenPluginClassLoader(MavenProject project, ClassLoader classLoader) throws
 			DependencyResolutionRequiredException {
+		this(project, classLoader, null);
+	}
+
+	/**
+	 * @param classpathCache if not null, the dependency jars are loaded by a class loader shared with all modules
+	 *                       of the same dependencies; only the directories stay with this loader, which asks the
+	 *                       given loader, or the bootstrap loader if null, then its directories and then the jars,
+	 *                       like a single loader would. Modules depending on directories of other reactor modules do
+	 *                       not share, as classes of the jars could not see the classes in those directories
+	 */
+	public MavenPluginClassLoader(MavenProject project, ClassLoader classLoader, ClasspathCache classpathCache)
+			throws DependencyResolutionRequiredException {
 		this.project = project;
 		this.urls = new LinkedList<>();
+		this.classpathCache = classpathCache;
 		load();
-		this.urlClassLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]),
-				classLoader
-		);
+		if (classpathCache == null || hasReactorDirectories()) {
+			this.urlClassLoader = new CountingClassLoader(urls.toArray(new URL[urls.size()]),
+					classLoader,
+					metrics
+			);
+		} else {
+			List<URL> directories = new ArrayList<>();
+			List<URL> jars = new ArrayList<>();
+			for (URL url : urls) {
+				File file = ClasspathCache.toFile(url);
+				(file != null && file.isFile() ? jars : directories).add(url);
+			}
+			this.urlClassLoader = new CountingClassLoader(directories.toArray(new URL[directories.size()]),
+					classLoader,
+					classpathCache.getDependencyLoader(classLoader, jars),
+					metrics
+			);
+		}
+	}
+
+	/**
+	 * Whether the classpath has directories other than the module's own, the output of other reactor modules.
+	 */
+	private boolean hasReactorDirectories() {
+		Set<File> own = new HashSet<>();
+		for (String root : project.getCompileSourceRoots()) {
+			own.add(new File(root).getAbsoluteFile());
+		}
+		own.add(new File(project.getBuild().getOutputDirectory()).getAbsoluteFile());
+		for (URL url : urls) {
+			File file = ClasspathCache.toFile(url);
+			if (file != null && !file.isFile() && !own.contains(file.getAbsoluteFile())) {
+				LOG.debug("Not sharing the dependency class loader, the classpath contains \"{}\".", file);
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private void load() throws DependencyResolutionRequiredException {
@@ -69,6 +127,45 @@ public class MavenPluginClassLoader extends ClassLoader {
 		}
 	}
 
+	/**
+	 * Keeps the results of {@link #scanClasses(Predicate, String...)} in the given file, so unchanged classpath
+	 * roots are not scanned again by the next build.
+	 */
+	public void setScanIndexFile(File scanIndexFile) {
+		this.scanIndexFile = scanIndexFile;
+	}
+
+	/**
+	 * Number of classpath roots scanned concurrently by {@link #scanClasses(Predicate, String...)}; values below 1
+	 * use one thread per available processor.
+	 */
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
+	/**
+	 * Records the time spent scanning and loading, and how many classes were found and loaded.
+	 */
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	/**
+	 * Counters of this loader only; the classes loaded by a shared dependency loader are counted by the
+	 * {@link ClasspathCache}.
+	 */
+	public ClassLoaderMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Closes the jars opened by this loader, shared dependency loaders stay open until the session ends.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.urlClassLoader.close();
+	}
+
 	@Override
 	public Class<?> loadClass(String name) throws ClassNotFoundException {
 		return this.urlClassLoader.loadClass(name);
@@ -95,17 +192,65 @@ public class MavenPluginClassLoader extends ClassLoader {
 				return null;
 			}
 		}).filter(Objects::nonNull).filter(predicate).collect(Collectors.toList());
+		logFound(collect);
+		return collect;
+	}
+
+	public List<Class<?>> loadClasses(String... prefixes) {
+		return loadClasses(c -> true, prefixes);
+	}
+
+	/**
+	 * Like {@link #loadClasses(Predicate, String...)}, but the predicate is applied to the class-file headers, so
+	 * only the matching classes are ever loaded.
+	 */
+	public List<Class<?>> scanClasses(Predicate<ClassMetadata> predicate, String... prefixes) {
+		List<ClassMetadata> scanned;
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("scan")) {
+			ScanIndex index = scanIndexFile == null ? null : ScanIndex.load(scanIndexFile, prefixes);
+			ClasspathScanner scanner = new ClasspathScanner(index, prefixes);
+			scanner.setThreads(scanThreads);
+			scanner.setClasspathCache(classpathCache);
+			scanner.setMetrics(metrics);
+			scanner.setInstrumentation(instrumentation);
+			scanned = scanner.scan(urls);
+			if (index != null) {
+				try {
+					index.save(scanIndexFile);
+				} catch (IOException e) {
+					LOG.warn("Failed to write scan index \"{}\": {}", scanIndexFile, e.getMessage());
+				}
+			}
+		}
+		instrumentation.count("scan.roots", urls.size());
+		instrumentation.count("scan.classes", scanned.size());
+
+		List<Class<?>> collect;
+		try (Instrumentation.Stopwatch ignored = instrumentation.start("load")) {
+			collect = scanned.stream()
+					.filter(predicate)
+					.map(metadata -> {
+						try {
+							return loadClass(metadata.getName());
+						} catch (ClassNotFoundException | LinkageError e) {
+							LOG.warn("Cannot load class \"{}\": {}", metadata.getName(), e.toString());
+							instrumentation.count("load.failed");
+							return null;
+						}
+					}).filter(Objects::nonNull).collect(Collectors.toList());
+		}
+		instrumentation.count("load.classes", collect.size());
+		logFound(collect);
+		return collect;
+	}
+
+	private static void logFound(List<Class<?>> collect) {
 		LOG.info("{} classes found in classpath.", collect.size());
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Found:\n{}",
 					String.join("\n", collect.stream().map(Class::getName).sorted().collect(Collectors.toList())));
 		}
-		return collect;
-	}
-
-	public List<Class<?>> loadClasses(String... prefixes) {
-		return loadClasses(c -> true, prefixes);
 	}
 
 	@Override
@@ -143,33 +288,11 @@ public class MavenPluginClassLoader extends ClassLoader {
 		this.urlClassLoader.clearAssertionStatus();
 	}
 
-	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-
-		MavenPluginClassLoader that = (MavenPluginClassLoader) o;
-
-		if (!project.equals(that.project)) return false;
-		if (!urls.equals(that.urls)) return false;
-		return urlClassLoader.equals(that.urlClassLoader);
-
-	}
-
-	@Override
-	public int hashCode() {
-		int result = project.hashCode();
-		result = 31 * result + urls.hashCode();
-		result = 31 * result + urlClassLoader.hashCode();
-		return result;
-	}
-
 	@Override
 	public String toString() {
 		return "MavenPluginClassLoader{" +
-				"project=" + project +
-				", urls=" + urls +
-				", urlClassLoader=" + urlClassLoader +
+				"project=" + project.getId() +
+				", urls=" + urls.size() +
 				'}';
 	}
 }
@@ -0,0 +1,96 @@
+package de.dasmo90.maven.plugin.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scan results per classpath root, stored on disk between builds. A root is only rescanned if its fingerprint
+ * changed since the last build.
+ */
+public class ScanIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ScanIndex.class);
+
+	private final List<String> prefixes;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private transient Map<String, Entry> used = new HashMap<>();
+
+	private ScanIndex(String... prefixes) {
+		this.prefixes = Arrays.asList(prefixes);
+	}
+
+	public static ScanIndex load(File file, String... prefixes) {
+		if (file.isFile()) {
+			try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				ScanIndex index = (ScanIndex) in.readObject();
+				if (index.prefixes.equals(Arrays.asList(prefixes))) {
+					index.used = new HashMap<>();
+					return index;
+				}
+				LOG.info("Package prefixes changed, discarding scan index.");
+			} catch (IOException | ClassNotFoundException | ClassCastException e) {
+				LOG.warn("Discarding unreadable scan index \"{}\": {}", file, e.getMessage());
+			}
+		}
+		return new ScanIndex(prefixes);
+	}
+
+	public synchronized List<ClassMetadata> get(File root, String fingerprint) {
+		Entry entry = entries.get(root.getAbsolutePath());
+		if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+			return null;
+		}
+		used.put(root.getAbsolutePath(), entry);
+		return entry.classes;
+	}
+
+	public synchronized void put(File root, String fingerprint, List<ClassMetadata> classes) {
+		Entry entry = new Entry(fingerprint, classes);
+		entries.put(root.getAbsolutePath(), entry);
+		used.put(root.getAbsolutePath(), entry);
+	}
+
+	/**
+	 * Writes all roots used since loading; roots which vanished from the classpath are dropped.
+	 */
+	public synchronized void save(File file) throws IOException {
+		entries.keySet().retainAll(used.keySet());
+		File parent = file.getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Couldn't create dir: " + parent);
+		}
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeObject(this);
+		}
+	}
+
+	private static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String fingerprint;
+		private final List<ClassMetadata> classes;
+
+		private Entry(String fingerprint, List<ClassMetadata> classes) {
+			this.fingerprint = fingerprint;
+			this.classes = new ArrayList<>(classes);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package de.dasmo90.maven.plugin.base;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Values shared by all mojo executions of one build, including the ones of parallel builds. Values which are
+ * {@link AutoCloseable} get closed when the session ends.
+ */
+public final class SessionScope {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SessionScope.class);
+
+	/**
+	 * Parallel builds clone the session per project, the request is the one object they all share.
+	 */
+	private static final Map<MavenExecutionRequest, SessionScope> SCOPES = new WeakHashMap<>();
+
+	private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+	private SessionScope() {
+	}
+
+	public static SessionScope of(MavenSession session) {
+		MavenExecutionRequest request = session.getRequest();
+		synchronized (SCOPES) {
+			SessionScope scope = SCOPES.get(request);
+			if (scope == null) {
+				scope = new SessionScope();
+				SCOPES.put(request, scope);
+				request.setExecutionListener(new SessionEndListener(request.getExecutionListener(), scope::close));
+			}
+			return scope;
+		}
+	}
+
+	public <T> T get(String key, Class<T> type, Supplier<T> factory) {
+		return type.cast(values.computeIfAbsent(key, k -> factory.get()));
+	}
+
+	public <T> T get(Class<T> type, Supplier<T> factory) {
+		return get(type.getName(), type, factory);
+	}
+
+	void close() {
+		List<Object> closing = new ArrayList<>(values.values());
+		values.clear();
+		for (Object value : closing) {
+			if (value instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) value).close();
+				} catch (Exception e) {
+					LOG.warn("Failed to close {}: {}", value, e.getMessage());
+				}
+			}
+		}
+	}
+}